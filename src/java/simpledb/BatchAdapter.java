@@ -0,0 +1,133 @@
+package simpledb;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Adapters between the tuple-at-a-time {@link DbIterator} interface and the
+ * batch-at-a-time {@link BatchIterator} interface, so that operators of
+ * either kind can be plugged into a plan of the other.
+ */
+public class BatchAdapter {
+
+    private BatchAdapter() {
+    }
+
+    /**
+     * @return a BatchIterator that reads the tuples of child in batches of
+     *         {@link TupleBatch#DEFAULT_CAPACITY} rows.
+     */
+    public static BatchIterator batches(DbIterator child) {
+        return new TupleToBatch(child, TupleBatch.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @return a BatchIterator that reads the tuples of child in batches of
+     *         at most the given number of rows.
+     */
+    public static BatchIterator batches(DbIterator child, int capacity) {
+        return new TupleToBatch(child, capacity);
+    }
+
+    /**
+     * @return a DbIterator that returns the selected rows of the batches of
+     *         child, one at a time.
+     */
+    public static DbIterator tuples(BatchIterator child) {
+        return new BatchToTuple(child);
+    }
+
+    private static class TupleToBatch implements BatchIterator {
+        private final DbIterator child;
+        private final int capacity;
+        private TupleBatch batch;
+
+        public TupleToBatch(DbIterator child, int capacity) {
+            this.child = child;
+            this.capacity = capacity;
+        }
+
+        public void open() throws DbException, TransactionAbortedException {
+            child.open();
+            batch = new TupleBatch(child.getTupleDesc(), capacity);
+        }
+
+        public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+            if (batch == null) {
+                throw new IllegalStateException("iterator is not open");
+            }
+            batch.clear();
+            while (!batch.isFull() && child.hasNext()) {
+                batch.addTuple(child.next());
+            }
+            return batch.size() == 0 ? null : batch;
+        }
+
+        public void rewind() throws DbException, TransactionAbortedException {
+            child.rewind();
+        }
+
+        public TupleDesc getTupleDesc() {
+            return child.getTupleDesc();
+        }
+
+        public void close() {
+            child.close();
+            batch = null;
+        }
+    }
+
+    private static class BatchToTuple implements DbIterator {
+        private static final long serialVersionUID = 1L;
+
+        private final transient BatchIterator child;
+        private transient TupleBatch batch;
+        private int next;
+        private boolean open;
+
+        public BatchToTuple(BatchIterator child) {
+            this.child = child;
+        }
+
+        public void open() throws DbException, TransactionAbortedException {
+            child.open();
+            open = true;
+            batch = null;
+        }
+
+        public boolean hasNext() throws DbException, TransactionAbortedException {
+            if (!open) {
+                throw new IllegalStateException("iterator is not open");
+            }
+            while (batch == null || next >= batch.numSelected()) {
+                batch = child.nextBatch();
+                next = 0;
+                if (batch == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public Tuple next() throws DbException, TransactionAbortedException, NoSuchElementException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.getTuple(batch.getSelection()[next++]);
+        }
+
+        public void rewind() throws DbException, TransactionAbortedException {
+            child.rewind();
+            batch = null;
+        }
+
+        public TupleDesc getTupleDesc() {
+            return child.getTupleDesc();
+        }
+
+        public void close() {
+            child.close();
+            open = false;
+            batch = null;
+        }
+    }
+}
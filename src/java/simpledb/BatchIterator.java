@@ -0,0 +1,48 @@
+package simpledb;
+
+/**
+ * BatchIterator is the batch-at-a-time counterpart of {@link DbIterator}:
+ * each call to {@link #nextBatch} returns many rows at once as a
+ * {@link TupleBatch}, so operators pay the cost of a call, and of checking
+ * their state, once per batch instead of once per tuple.
+ * <p>
+ * A DbIterator can be read in batches through
+ * {@link BatchAdapter#batches}, and a BatchIterator read tuple by tuple
+ * through {@link BatchAdapter#tuples}.
+ */
+public interface BatchIterator {
+
+    /**
+     * Opens the iterator. This must be called before any of the other
+     * methods.
+     */
+    public void open() throws DbException, TransactionAbortedException;
+
+    /**
+     * Returns the next batch of rows. The batch may have rows that are not
+     * selected, but it has at least one selected row.
+     * <p>
+     * The iterator may reuse the same batch object on every call, so its
+     * contents are only valid until the next call to nextBatch, rewind or
+     * close.
+     *
+     * @return the next batch, or null if there are no more rows.
+     * @throws IllegalStateException If the iterator has not been opened
+     */
+    public TupleBatch nextBatch() throws DbException, TransactionAbortedException;
+
+    /**
+     * Resets the iterator to the start.
+     */
+    public void rewind() throws DbException, TransactionAbortedException;
+
+    /**
+     * @return the TupleDesc of the rows of the batches.
+     */
+    public TupleDesc getTupleDesc();
+
+    /**
+     * Closes the iterator.
+     */
+    public void close();
+}
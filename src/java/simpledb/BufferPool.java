@@ -67,25 +67,44 @@ public class BufferPool {
      * space in the buffer pool, an page should be evicted and the new page
      * should be added in its place.
      *
+     * <p>
+     * Several threads may fetch pages at once. A page that is not cached is
+     * read without holding the pool's lock, so misses on different pages
+     * are read in parallel; if two threads read the same page, the first
+     * one cached is returned to both.
+     *
      * @param tid the ID of the transaction requesting the page
      * @param pid the ID of the requested page
      * @param perm the requested permissions on the page
      */
     public Page getPage(TransactionId tid, PageId pid, Permissions perm)
         throws TransactionAbortedException, DbException {
-        if (bufferPool.pageIdPageMap.containsKey(pid)){
-            return bufferPool.getPage(pid);
-        } else {
-            Page page = Database.getCatalog().getDatabaseFile(pid.getTableId()).readPage(pid);
-
-            if (bufferPool.size() == numPages){
-                evictPage();
-            }
+        Page cached = bufferPool.getPage(pid);
+        if (cached != null){
+            return cached;
+        }
+        Page page = Database.getCatalog().getDatabaseFile(pid.getTableId()).readPage(pid);
+        return cachePage(page);
+    }
 
-            assert bufferPool.size() < numPages;
-            bufferPool.putPage(page.getId(),page);
-            return page;
+    /**
+     * Adds a page just read to the pool, evicting a page if the pool is
+     * full, unless another thread cached the same page first.
+     *
+     * @return the cached page
+     */
+    private synchronized Page cachePage(Page page) throws DbException {
+        Page cached = bufferPool.getPage(page.getId());
+        if (cached != null){
+            return cached;
         }
+        if (bufferPool.size() == numPages){
+            evictPage();
+        }
+
+        assert bufferPool.size() < numPages;
+        bufferPool.putPage(page.getId(),page);
+        return page;
     }
 
     /**
@@ -151,10 +170,7 @@ public class BufferPool {
         throws DbException, IOException, TransactionAbortedException {
         DbFile dbFile = Database.getCatalog().getDatabaseFile(tableId);
         ArrayList<Page> affectedPages = dbFile.insertTuple(tid, t);
-        for (Page page : affectedPages) {
-            page.markDirty(true, tid);
-            bufferPool.putPage(page.getId(), page);
-        }
+        cacheDirtyPages(tid, affectedPages);
     }
 
     /**
@@ -173,10 +189,19 @@ public class BufferPool {
     public  void deleteTuple(TransactionId tid, Tuple t)
         throws DbException, IOException, TransactionAbortedException {
         DbFile dbFile = Database.getCatalog().getDatabaseFile(t.getRecordId().getPageId().getTableId());
-        Page affectedPage = (Page) dbFile.deleteTuple(tid, t);
-        affectedPage.markDirty(true, tid);
+        ArrayList<Page> affectedPages = dbFile.deleteTuple(tid, t);
+        cacheDirtyPages(tid, affectedPages);
+    }
 
-        bufferPool.putPage(affectedPage.getId(), affectedPage);
+    /**
+     * Marks pages dirtied by a transaction and puts them in the pool,
+     * under the same lock as every other change to the pool.
+     */
+    private synchronized void cacheDirtyPages(TransactionId tid, ArrayList<Page> pages) {
+        for (Page page : pages) {
+            page.markDirty(true, tid);
+            bufferPool.putPage(page.getId(), page);
+        }
     }
 
     /**
@@ -217,10 +242,27 @@ public class BufferPool {
     }
 
     /** Write all pages of the specified transaction to disk.
+     * They are marked clean afterwards.
      */
     public synchronized  void flushPages(TransactionId tid) throws IOException {
-        // some code goes here
-        // not necessary for lab1|lab2
+        for (Page page : dirtiedPages(tid)) {
+            flushPage(page.getId());
+            page.markDirty(false, null);
+            page.setBeforeImage();
+        }
+    }
+
+    /**
+     * @return the cached pages the transaction has dirtied
+     */
+    private ArrayList<Page> dirtiedPages(TransactionId tid) {
+        ArrayList<Page> dirtied = new ArrayList<Page>();
+        for (Page page : bufferPool.pageIdPageMap.values()) {
+            if (tid.equals(page.isDirty())) {
+                dirtied.add(page);
+            }
+        }
+        return dirtied;
     }
 
     /**
@@ -1,9 +1,18 @@
 package simpledb;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
 import java.util.*;
 
 /**
@@ -22,15 +31,111 @@ public class Catalog {
         private DbFile file;  //contents of the table to add
         private String name;  //the name of the table
         private String pkey;  //the name of the primary key field
+        // the schema of each version of the table, oldest first, and the
+        // default value of each field added by a later version
+        private final List<TupleDesc> versions = new ArrayList<TupleDesc>();
+        private final List<Field> defaults = new ArrayList<Field>();
 
         //table class constructor
         public Table(DbFile i, String j, String k) {
             this.file = i;
             this.name = j;
             this.pkey = k;
+            if (i instanceof HeapFile && ((HeapFile) i).schemaFile().exists()) {
+                loadVersions((HeapFile) i);
+                return;
+            }
+            versions.add(i.getTupleDesc());
+            for (int f = 0; f < i.getTupleDesc().numFields(); f++) {
+                defaults.add(null);
+            }
+        }
+
+        /**
+         * Reads the schema versions saved by {@link #saveVersions} and moves
+         * the file to the latest one. The schema the file was opened with,
+         * e.g. from a catalog file, must be one of the saved versions.
+         */
+        private void loadVersions(HeapFile hf) {
+            File f = hf.schemaFile();
+            try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+                int n = dis.readInt();
+                for (int v = 0; v < n; v++) {
+                    versions.add(TupleDesc.intern(readTupleDesc(dis)));
+                }
+                TupleDesc last = versions.get(n - 1);
+                for (int field = 0; field < last.numFields(); field++) {
+                    Type type = last.getFieldType(field);
+                    if (!dis.readBoolean()) {
+                        defaults.add(null);
+                    } else if (type == Type.STRING_TYPE) {
+                        defaults.add(StringField.parse(dis, last.getStringLength(field)));
+                    } else {
+                        defaults.add(type.parse(dis));
+                    }
+                }
+            } catch (IOException | ParseException e) {
+                throw new IllegalArgumentException("cannot read schema versions from " + f, e);
+            }
+            if (!versions.contains(hf.getTupleDesc())) {
+                throw new IllegalArgumentException("schema " + hf.getTupleDesc() + " of " + hf.getFile()
+                        + " is none of its saved versions");
+            }
+            if (hf.getTupleDesc() != versions.get(versions.size() - 1)) {
+                hf.setTupleDesc(versions.get(versions.size() - 1));
+            }
+        }
+
+        /**
+         * Saves the schema versions and defaults next to the file, replacing
+         * the saved ones at once.
+         */
+        private void saveVersions(HeapFile hf) throws IOException {
+            File f = hf.schemaFile();
+            File tmp = new File(f.getPath() + ".tmp");
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                dos.writeInt(versions.size());
+                for (TupleDesc td : versions) {
+                    writeTupleDesc(dos, td);
+                }
+                for (Field d : defaults) {
+                    dos.writeBoolean(d != null);
+                    if (d != null) {
+                        d.serialize(dos);
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private static void writeTupleDesc(DataOutputStream dos, TupleDesc td) throws IOException {
+        dos.writeInt(td.numFields());
+        for (int i = 0; i < td.numFields(); i++) {
+            String name = td.getFieldName(i);
+            dos.writeUTF(td.getFieldType(i).name());
+            dos.writeBoolean(name != null);
+            dos.writeUTF(name == null ? "" : name);
+            dos.writeInt(td.getFieldType(i) == Type.STRING_TYPE ? td.getStringLength(i) : 0);
         }
     }
 
+    private static TupleDesc readTupleDesc(DataInputStream dis) throws IOException {
+        int n = dis.readInt();
+        Type[] types = new Type[n];
+        String[] names = new String[n];
+        int[] lengths = new int[n];
+        for (int i = 0; i < n; i++) {
+            types[i] = Type.valueOf(dis.readUTF());
+            boolean named = dis.readBoolean();
+            String name = dis.readUTF();
+            names[i] = named ? name : null;
+            lengths[i] = dis.readInt();
+        }
+        return new TupleDesc(types, names, lengths);
+    }
+
     //used for catalog constructor
     private Map<Integer, Table> id_to_table;
     private Map<String, Table> name_to_table;
@@ -125,6 +230,98 @@ public class Catalog {
         }
     }
 
+    /**
+     * Returns the schema of the given version of the specified table.
+     * @param version a version number, from 0 for the schema the table was
+     *     added with to {@link #getSchemaVersion} for its current schema
+     * @throws NoSuchElementException if the table or version doesn't exist
+     */
+    public TupleDesc getTupleDesc(int tableid, int version) throws NoSuchElementException {
+        List<TupleDesc> versions = table(tableid).versions;
+        if (version < 0 || version >= versions.size()) {
+            throw new NoSuchElementException("no version " + version + " of table " + tableid);
+        }
+        return versions.get(version);
+    }
+
+    /**
+     * Returns the version number of the current schema of the specified
+     * table: 0 until a column is added with {@link #addColumn}.
+     * @throws NoSuchElementException if the table doesn't exist
+     */
+    public int getSchemaVersion(int tableid) throws NoSuchElementException {
+        return table(tableid).versions.size() - 1;
+    }
+
+    /**
+     * Returns the value that the given field has in tuples written before
+     * the field was added to the specified table.
+     * @return the default value, or null if the field was part of the first
+     *     version of the table
+     * @throws NoSuchElementException if the table doesn't exist
+     */
+    public Field getDefaultValue(int tableid, int field) throws NoSuchElementException {
+        return table(tableid).defaults.get(field);
+    }
+
+    /**
+     * Adds a field after the existing fields of the specified table, as a
+     * new version of its schema. The table's file is not rewritten: its
+     * pages keep the version they were written with, and tuples read from
+     * older pages have the default value in the new field. A page moves to
+     * the current version the next time it is modified, if its tuples fit
+     * in the new layout.
+     * <p>
+     * Pages of the table are flushed and dropped from the BufferPool, so
+     * that no page with the old schema stays cached. The versions and
+     * defaults are saved next to the table's file (see
+     * {@link HeapFile#schemaFile}) and read back when the file is added to
+     * a catalog again.
+     *
+     * @param tableid the table to change, which must be stored in a HeapFile
+     *     with fixed-size slots
+     * @param name the name of the new field
+     * @param defaultValue the value of the new field in existing tuples; its
+     *     type is the type of the field
+     * @return the number of the new schema version
+     * @throws IllegalArgumentException if the table does not support schema
+     *     versions or has too many of them
+     * @throws IOException if the table's pages cannot be flushed
+     */
+    public synchronized int addColumn(int tableid, String name, Field defaultValue) throws IOException {
+        Table t = table(tableid);
+        if (!(t.file instanceof HeapFile) || !((HeapFile) t.file).getPageFormat().supportsSchemaVersions()) {
+            throw new IllegalArgumentException("table " + tableid + " does not support schema versions");
+        }
+        if (t.versions.size() > 255) {
+            throw new IllegalArgumentException("table " + tableid + " has too many schema versions");
+        }
+        HeapFile file = (HeapFile) t.file;
+
+        Database.getBufferPool().flushAllPages();
+        for (int pageNo = 0; pageNo < file.numPages(); pageNo++) {
+            Database.getBufferPool().discardPage(new HeapPageId(tableid, pageNo));
+        }
+
+        int len = defaultValue instanceof StringField ? ((StringField) defaultValue).getMaxSize() : 0;
+        TupleDesc added = new TupleDesc(new Type[] { defaultValue.getType() }, new String[] { name },
+                new int[] { len });
+        file.setTupleDesc(TupleDesc.merge(file.getTupleDesc(), added));
+        t.versions.add(file.getTupleDesc());
+        t.defaults.add(defaultValue);
+        // saved before any page is written with the new version
+        t.saveVersions(file);
+        return t.versions.size() - 1;
+    }
+
+    private Table table(int tableid) throws NoSuchElementException {
+        Table t = id_to_table.get(tableid);
+        if (t == null) {
+            throw new NoSuchElementException("no table " + tableid);
+        }
+        return t;
+    }
+
     /**
      * Returns the DbFile that can be used to read the contents of the
      * specified table.
@@ -192,22 +389,24 @@ public class Catalog {
             BufferedReader br = new BufferedReader(new FileReader(new File(catalogFile)));
 
             while ((line = br.readLine()) != null) {
-                //assume line is of the format name (field type, field type, ...)
+                //assume line is of the format name (field type, field type, ...),
+                //where a string type may declare its length as string(n)
                 String name = line.substring(0, line.indexOf("(")).trim();
                 //System.out.println("TABLE NAME: " + name);
-                String fields = line.substring(line.indexOf("(") + 1, line.indexOf(")")).trim();
+                String fields = line.substring(line.indexOf("(") + 1, line.lastIndexOf(")")).trim();
                 String[] els = fields.split(",");
                 ArrayList<String> names = new ArrayList<String>();
                 ArrayList<Type> types = new ArrayList<Type>();
+                ArrayList<Integer> lengths = new ArrayList<Integer>();
                 String primaryKey = "";
                 for (String e : els) {
                     String[] els2 = e.trim().split(" ");
                     names.add(els2[0].trim());
-                    if (els2[1].trim().toLowerCase().equals("int"))
-                        types.add(Type.INT_TYPE);
-                    else if (els2[1].trim().toLowerCase().equals("string"))
-                        types.add(Type.STRING_TYPE);
-                    else {
+                    Type type = Type.forName(els2[1]);
+                    if (type != null) {
+                        types.add(type);
+                        lengths.add(Type.stringLength(els2[1]));
+                    } else {
                         System.out.println("Unknown type " + els2[1]);
                         System.exit(0);
                     }
@@ -222,7 +421,10 @@ public class Catalog {
                 }
                 Type[] typeAr = types.toArray(new Type[0]);
                 String[] namesAr = names.toArray(new String[0]);
-                TupleDesc t = new TupleDesc(typeAr, namesAr);
+                int[] lengthsAr = new int[lengths.size()];
+                for (int i = 0; i < lengthsAr.length; i++)
+                    lengthsAr[i] = lengths.get(i);
+                TupleDesc t = new TupleDesc(typeAr, namesAr, lengthsAr);
                 HeapFile tabHf = new HeapFile(new File(baseFolder+"/"+name + ".dat"), t);
                 addTable(tabHf,name,primaryKey);
                 System.out.println("Added table : " + name + " with schema " + t);
@@ -230,7 +432,7 @@ public class Catalog {
         } catch (IOException e) {
             e.printStackTrace();
             System.exit(0);
-        } catch (IndexOutOfBoundsException e) {
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
             System.out.println ("Invalid catalog entry : " + line);
             System.exit(0);
         }
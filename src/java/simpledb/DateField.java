@@ -0,0 +1,101 @@
+package simpledb;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Instance of Field that stores a calendar date, as the number of days
+ * since 1970-01-01.
+ */
+public class DateField implements Field {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long epochDay;
+
+    /**
+     * @return the number of days since 1970-01-01.
+     */
+    public long getValue() {
+        return epochDay;
+    }
+
+    /**
+     * @return the date stored in this field.
+     */
+    public LocalDate getDate() {
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param epochDay The number of days since 1970-01-01.
+     */
+    public DateField(long epochDay) {
+        this.epochDay = epochDay;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param date The value of this field.
+     */
+    public DateField(LocalDate date) {
+        this(date.toEpochDay());
+    }
+
+    /**
+     * Parses a date written as yyyy-mm-dd.
+     *
+     * @throws IllegalArgumentException if the text is not a valid date.
+     */
+    public static DateField valueOf(String text) {
+        try {
+            return new DateField(LocalDate.parse(text));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid date: " + text, e);
+        }
+    }
+
+    public String toString() {
+        return getDate().toString();
+    }
+
+    public int hashCode() {
+        return Long.hashCode(epochDay);
+    }
+
+    public boolean equals(Object field) {
+        return field instanceof DateField && ((DateField) field).epochDay == epochDay;
+    }
+
+    public void serialize(DataOutputStream dos) throws IOException {
+        dos.writeLong(epochDay);
+    }
+
+    public void serialize(ByteBuffer buf, int offset) {
+        buf.putLong(offset, epochDay);
+    }
+
+    /**
+     * Compare the specified field to the value of this Field.
+     * Return semantics are as specified by Field.compare
+     *
+     * @throws IllegalCastException if val is not a DateField
+     * @see Field#compare
+     */
+    public boolean compare(Predicate.Op op, Field val) {
+        return op.holds(Long.compare(epochDay, ((DateField) val).epochDay));
+    }
+
+    /**
+     * Return the Type of this field.
+     * @return Type.DATE_TYPE
+     */
+	public Type getType() {
+		return Type.DATE_TYPE;
+	}
+}
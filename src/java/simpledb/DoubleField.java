@@ -0,0 +1,69 @@
+package simpledb;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Instance of Field that stores a single double-precision floating point
+ * number.
+ */
+public class DoubleField implements Field {
+
+	private static final long serialVersionUID = 1L;
+
+	private final double value;
+
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param d The value of this field.
+     */
+    public DoubleField(double d) {
+        value = d;
+    }
+
+    public String toString() {
+        return Double.toString(value);
+    }
+
+    public int hashCode() {
+        return Double.hashCode(value);
+    }
+
+    public boolean equals(Object field) {
+        return field instanceof DoubleField
+                && Double.compare(((DoubleField) field).value, value) == 0;
+    }
+
+    public void serialize(DataOutputStream dos) throws IOException {
+        dos.writeDouble(value);
+    }
+
+    public void serialize(ByteBuffer buf, int offset) {
+        buf.putDouble(offset, value);
+    }
+
+    /**
+     * Compare the specified field to the value of this Field.
+     * Return semantics are as specified by Field.compare. Values are
+     * ordered as by {@link Double#compare}.
+     *
+     * @throws IllegalCastException if val is not a DoubleField
+     * @see Field#compare
+     */
+    public boolean compare(Predicate.Op op, Field val) {
+        return op.holds(Double.compare(value, ((DoubleField) val).value));
+    }
+
+    /**
+     * Return the Type of this field.
+     * @return Type.DOUBLE_TYPE
+     */
+	public Type getType() {
+		return Type.DOUBLE_TYPE;
+	}
+}
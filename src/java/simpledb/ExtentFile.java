@@ -0,0 +1,367 @@
+package simpledb;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * ExtentFile is a file of fixed size pages, as used underneath HeapFile.
+ * It keeps the number of written pages in memory, grows the file by whole
+ * extents of zeroed pages, and can optionally bypass the operating system
+ * page cache with direct I/O.
+ * <p>
+ * Since preallocated pages and written empty pages are both all zeroes, the
+ * number of written pages cannot be told from the file length alone; it is
+ * kept in a small sidecar file, see {@link #countFile}. The sidecar is not
+ * forced, so after a crash it may lag behind the data: on open, the pages
+ * past the recorded count are scanned and the last one that is not all
+ * zeroes ends the file. Only written empty pages can be lost that way,
+ * which reads the same as never writing them. A file without a sidecar
+ * (e.g. one written by HeapFileEncoder), or one shorter than its recorded
+ * count, holds as many pages as fit in its length.
+ * <p>
+ * Reads never create the file: they go through a read-only channel until
+ * the first write opens the file for writing, and a missing file reads as
+ * empty.
+ *
+ * @see HeapFile
+ */
+class ExtentFile {
+
+    /** Default number of bytes a file grows by once it is full. */
+    static final int DEFAULT_EXTENT_SIZE = 1 << 20;
+
+    /** Suffix of the sidecar holding the page count, see {@link #countFile}. */
+    static final String COUNT_SUFFIX = ".pages";
+
+    private final File file;
+    private final int extentSize;
+    private final boolean directIo;
+
+    // opened lazily, guarded by this; readers may keep using the read-only
+    // channel after the writable one is opened, so both stay open until close
+    private FileChannel channel;
+    private FileChannel readChannel;
+    private FileChannel countChannel;
+    // buffer alignment required by the open channel, 0 when it is buffered
+    private int alignment;
+    private final ThreadLocal<ByteBuffer> ioBuffer = new ThreadLocal<ByteBuffer>();
+    // number of pages holding data, -1 until first read from disk
+    private int numPages = -1;
+    // bytes reserved on disk, including preallocated pages past numPages
+    private long allocatedBytes = -1;
+
+    /**
+     * @param f the file holding the pages
+     * @param extentSize number of bytes to grow the file by; values no
+     *            larger than the page size disable preallocation.
+     * @param directIo true to open the file for direct I/O
+     */
+    ExtentFile(File f, int extentSize, boolean directIo) {
+        this.file = f;
+        this.extentSize = extentSize;
+        this.directIo = directIo;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the given page into data. Pages past the end of the file read
+     * as all zeroes.
+     */
+    void readPage(int pageNo, byte[] data) throws IOException {
+        readBlock(data, (long) pageNo * data.length);
+    }
+
+    /**
+     * Writes the given page, extending the file by an extent if the page
+     * lies past the reserved space.
+     */
+    synchronized void writePage(int pageNo, byte[] data) throws IOException {
+        long offset = (long) pageNo * data.length;
+        // count the pages before the file grows past them
+        int pages = numPages();
+        boolean grown = reserve(offset + data.length);
+        writeBlock(data, offset);
+        if (pageNo >= pages) {
+            numPages = pageNo + 1;
+            saveCount();
+        }
+    }
+
+    /**
+     * Returns the number of pages in this file. The count is kept in memory;
+     * the file is only inspected the first time it is needed.
+     */
+    synchronized int numPages() {
+        if (numPages < 0) {
+            try {
+                numPages = countPages();
+            } catch (IOException e) {
+                throw new IllegalStateException("ExtentFile: numPages: cannot read " + file, e);
+            }
+        }
+        return numPages;
+    }
+
+    /**
+     * Shrinks the file to the given number of pages, releasing the space of
+     * the pages past it, including any preallocated extent.
+     */
+    synchronized void truncate(int pages) throws IOException {
+        long length = (long) pages * BufferPool.getPageSize();
+        if (length < channel().size()) {
+            channel().truncate(length);
+            channel().force(true);
+        }
+        allocatedBytes = channel().size();
+        numPages = Math.min(numPages(), pages);
+        saveCount();
+    }
+
+    /** Closes the underlying channels; they are reopened on the next access. */
+    synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        if (readChannel != null) {
+            readChannel.close();
+            readChannel = null;
+        }
+        if (countChannel != null) {
+            countChannel.close();
+            countChannel = null;
+        }
+    }
+
+    /**
+     * Closes and deletes the file and its sidecar.
+     *
+     * @return true if the file no longer exists
+     */
+    synchronized boolean delete() throws IOException {
+        close();
+        countFile().delete();
+        numPages = -1;
+        allocatedBytes = -1;
+        return file.delete() || !file.exists();
+    }
+
+    /**
+     * @return the file that records the number of pages written to this
+     *         file.
+     */
+    File countFile() {
+        return new File(file.getPath() + COUNT_SUFFIX);
+    }
+
+    /**
+     * Makes sure at least the given number of bytes are reserved on disk,
+     * growing the file by whole extents of zeroes if needed.
+     *
+     * @return true if the file was extended
+     */
+    private boolean reserve(long bytes) throws IOException {
+        if (allocatedBytes < 0) {
+            allocatedBytes = channel().size();
+        }
+        if (bytes <= allocatedBytes) {
+            return false;
+        }
+        int size = Database.getBufferPool().getPageSize();
+        long extent = Math.max(size, extentSize - extentSize % size);
+        long target = (bytes + extent - 1) / extent * extent;
+
+        ByteBuffer zeroes = allocate((int) Math.min(extent, 64 * 1024));
+        for (long pos = allocatedBytes; pos < target; ) {
+            zeroes.clear();
+            zeroes.limit((int) Math.min(zeroes.capacity(), target - pos));
+            pos += channel().write(zeroes, pos);
+        }
+        allocatedBytes = target;
+        return true;
+    }
+
+    /**
+     * Counts the pages of the file: the count recorded in the sidecar, moved
+     * past any page after it that is not all zeroes; without a usable
+     * sidecar, every page of the file counts.
+     */
+    private int countPages() throws IOException {
+        FileChannel ch = readChannel();
+        if (ch == null) {
+            return 0;
+        }
+        int pageSize = Database.getBufferPool().getPageSize();
+        int pages = (int) (ch.size() / pageSize);
+        int recorded = readCount();
+        if (recorded < 0 || recorded > pages) {
+            return pages;
+        }
+        byte[] data = new byte[pageSize];
+        for (int pageNo = pages - 1; pageNo >= recorded; pageNo--) {
+            Arrays.fill(data, (byte) 0);
+            readPage(pageNo, data);
+            for (byte b : data) {
+                if (b != 0) {
+                    return pageNo + 1;
+                }
+            }
+        }
+        return recorded;
+    }
+
+    private static final int COUNT_BYTES = 4;
+
+    /** @return the page count recorded in the sidecar, or -1 if there is none */
+    private int readCount() throws IOException {
+        File f = countFile();
+        if (f.length() < COUNT_BYTES) {
+            return -1;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(COUNT_BYTES);
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            while (buf.hasRemaining() && ch.read(buf) >= 0) {
+            }
+        }
+        return buf.getInt(0);
+    }
+
+    /** Records the page count in the sidecar. */
+    private void saveCount() throws IOException {
+        if (countChannel == null || !countChannel.isOpen()) {
+            countChannel = FileChannel.open(countFile().toPath(), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(COUNT_BYTES);
+        buf.putInt(0, numPages);
+        while (buf.hasRemaining()) {
+            countChannel.write(buf, buf.position());
+        }
+    }
+
+    /**
+     * Reads data.length bytes at the given file offset into data; bytes past
+     * the end of the file are left untouched.
+     */
+    private void readBlock(byte[] data, long offset) throws IOException {
+        FileChannel ch = readChannel();
+        if (ch == null) {
+            return;
+        }
+        ByteBuffer buf = alignment == 0 ? ByteBuffer.wrap(data) : ioBuffer(data.length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, offset + buf.position()) < 0) {
+                break;
+            }
+        }
+        if (alignment != 0) {
+            buf.flip();
+            buf.get(data, 0, buf.remaining());
+        }
+    }
+
+    /** Writes all of data at the given file offset. */
+    private void writeBlock(byte[] data, long offset) throws IOException {
+        FileChannel ch = channel();
+        ByteBuffer buf;
+        if (alignment == 0) {
+            buf = ByteBuffer.wrap(data);
+        } else {
+            buf = ioBuffer(data.length);
+            buf.put(data);
+            buf.flip();
+        }
+        while (buf.hasRemaining()) {
+            ch.write(buf, offset + buf.position());
+        }
+    }
+
+    /**
+     * Returns this thread's transfer buffer for direct I/O, cleared and
+     * limited to the given length.
+     */
+    private ByteBuffer ioBuffer(int length) {
+        ByteBuffer buf = ioBuffer.get();
+        if (buf == null || buf.capacity() < length) {
+            buf = allocate(length);
+            ioBuffer.set(buf);
+        }
+        buf.clear();
+        buf.limit(length);
+        return buf;
+    }
+
+    /**
+     * Allocates a buffer suitable for transfers on the open channel: a plain
+     * heap buffer, or a block-aligned direct buffer in direct mode.
+     */
+    private ByteBuffer allocate(int capacity) {
+        if (alignment == 0) {
+            return ByteBuffer.allocate(capacity);
+        }
+        return ByteBuffer.allocateDirect(capacity + alignment).alignedSlice(alignment);
+    }
+
+    /** @return the channel to write through, creating the file if needed */
+    private synchronized FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = open(StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        }
+        return channel;
+    }
+
+    /**
+     * @return the channel to read through, or null if the file does not
+     *         exist; the writable channel is used once it is open.
+     */
+    private synchronized FileChannel readChannel() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            return channel;
+        }
+        if (readChannel == null || !readChannel.isOpen()) {
+            if (!file.exists()) {
+                return null;
+            }
+            readChannel = open(StandardOpenOption.READ);
+        }
+        return readChannel;
+    }
+
+    private FileChannel open(OpenOption... options) throws IOException {
+        alignment = 0;
+        FileChannel ch = directIo ? openDirect(options) : null;
+        return ch != null ? ch : FileChannel.open(file.toPath(), options);
+    }
+
+    /**
+     * Opens the backing file with O_DIRECT and records the alignment it
+     * needs, or returns null if direct I/O cannot be used for this file.
+     */
+    private FileChannel openDirect(OpenOption... options) {
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            int blockSize = (int) Files.getFileStore(parent.toPath()).getBlockSize();
+            if (blockSize <= 0 || Database.getBufferPool().getPageSize() % blockSize != 0) {
+                Debug.log("ExtentFile: page size is not aligned to %d, not using direct I/O for %s",
+                        blockSize, file);
+                return null;
+            }
+            OpenOption[] direct = Arrays.copyOf(options, options.length + 1);
+            direct[options.length] = com.sun.nio.file.ExtendedOpenOption.DIRECT;
+            FileChannel ch = FileChannel.open(file.toPath(), direct);
+            alignment = blockSize;
+            return ch;
+        } catch (IOException | UnsupportedOperationException e) {
+            Debug.log("ExtentFile: direct I/O unavailable for %s: %s", file, e);
+            return null;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package simpledb;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * Interface for values of fields in tuples in SimpleDB.
@@ -14,6 +15,16 @@ public interface Field extends Serializable{
      */
     void serialize(DataOutputStream dos) throws IOException;
 
+    /**
+     * Write the bytes representing this field to the specified buffer,
+     * starting at the given absolute offset, in the same format as
+     * {@link #serialize(DataOutputStream)}. The buffer's position is left
+     * unchanged.
+     * @param buf The buffer to write to.
+     * @param offset The offset of the first byte of the field.
+     */
+    void serialize(ByteBuffer buf, int offset);
+
     /**
      * Compare the value of this field object to the passed in value.
      * @param op The operator
@@ -23,7 +34,9 @@ public interface Field extends Serializable{
     public boolean compare(Predicate.Op op, Field value);
 
     /**
-     * Returns the type of this field (see {@link Type#INT_TYPE} or {@link Type#STRING_TYPE}
+     * Returns the type of this field (see {@link Type#INT_TYPE}, {@link Type#STRING_TYPE},
+     * {@link Type#LONG_TYPE}, {@link Type#DOUBLE_TYPE}, {@link Type#DATE_TYPE} or
+     * {@link Type#TIMESTAMP_TYPE})
      * @return type of this field
      */
     public Type getType();
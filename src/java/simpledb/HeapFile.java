@@ -8,15 +8,37 @@ import java.util.*;
  * in no particular order. Tuples are stored on pages, each of which is a fixed
  * size, and the file is simply a collection of those pages. HeapFile works
  * closely with HeapPage. The format of HeapPages is described in the HeapPage
- * constructor.
+ * constructor. A HeapFile can instead store its tuples as variable-length
+ * records on SlottedHeapPages; see {@link PageFormat}.
  * 
  * @see simpledb.HeapPage#HeapPage
+ * @see simpledb.SlottedHeapPage
  * @author Sam Madden
  */
 public class HeapFile implements DbFile {
 
+    /** Default number of bytes the backing file grows by once it is full. */
+    public static final int DEFAULT_EXTENT_SIZE = ExtentFile.DEFAULT_EXTENT_SIZE;
+
+    private static final String VERSION_SUFFIX = ".ver";
+    private static final String SCHEMA_SUFFIX = ".schema";
+    private static final String ZONE_SUFFIX = ".zm";
+
     private File file;
-    private TupleDesc tupleDesc;
+    private volatile TupleDesc tupleDesc;
+    private final ExtentFile store;
+    private final PageFormat format;
+    private volatile ZoneMap zoneMap;
+    // the schema version each page was last written with, one byte per page,
+    // mirrored in the file named by versionFile(); loaded on first use.
+    // Guarded by versionLock rather than this, since pages are written with
+    // the BufferPool locked.
+    private byte[] pageVersions;
+    private final Object versionLock = new Object();
+    // first page that may still have free slots for compaction to fill,
+    // guarded by compactLock
+    private int compactHead;
+    private final Object compactLock = new Object();
 
     /**
      * Constructs a heap file backed by the specified file.
@@ -26,8 +48,79 @@ public class HeapFile implements DbFile {
      *            file.
      */
     public HeapFile(File f, TupleDesc td) {
+        this(f, td, DEFAULT_EXTENT_SIZE);
+    }
+
+    /**
+     * Constructs a heap file backed by the specified file that grows in
+     * extents of the given size. When a page is appended past the end of
+     * the reserved space, a whole extent of zeroed pages is written at once
+     * so that the file does not fragment one page at a time.
+     *
+     * @param f
+     *            the file that stores the on-disk backing store for this heap
+     *            file.
+     * @param extentSize
+     *            number of bytes to grow the file by; values no larger than
+     *            the page size disable preallocation.
+     */
+    public HeapFile(File f, TupleDesc td, int extentSize) {
+        this(f, td, extentSize, false);
+    }
+
+    /**
+     * Constructs a heap file that optionally bypasses the operating system
+     * page cache. In direct mode the file is opened with O_DIRECT and all
+     * transfers go through block-aligned direct buffers, so pages are cached
+     * once, in the BufferPool, rather than also in the kernel. If the
+     * platform or file system does not support direct I/O, or the page size
+     * is not a multiple of the file system block size, the file silently
+     * falls back to buffered I/O.
+     *
+     * @param directIo
+     *            true to open the backing file for direct I/O.
+     */
+    public HeapFile(File f, TupleDesc td, int extentSize, boolean directIo) {
+        this(f, td, PageFormat.HEAP, extentSize, directIo);
+    }
+
+    /**
+     * Constructs a heap file whose pages are stored in the given format.
+     *
+     * @param format
+     *            the layout of the pages of this file.
+     */
+    public HeapFile(File f, TupleDesc td, PageFormat format) {
+        this(f, td, format, DEFAULT_EXTENT_SIZE, false);
+    }
+
+    /**
+     * Constructs a heap file with the given page format, extent size and
+     * I/O mode.
+     *
+     * @see #HeapFile(File, TupleDesc, int, boolean)
+     */
+    public HeapFile(File f, TupleDesc td, PageFormat format, int extentSize, boolean directIo) {
+        this(f, td, format, new ExtentFile(f, extentSize, directIo));
+    }
+
+    /**
+     * Constructs a heap file over the given page store. A subclass that
+     * keeps its pages elsewhere passes a null store and must override
+     * readPage, writePage, numPages, truncate and lastModified.
+     *
+     * @param f
+     *            the file identifying this heap file; its schema versions
+     *            are kept next to it.
+     * @param store
+     *            the file holding the pages, or null.
+     */
+    protected HeapFile(File f, TupleDesc td, PageFormat format, ExtentFile store) {
         file = f;
-        tupleDesc = td;
+        tupleDesc = TupleDesc.intern(td);
+        this.format = format;
+        this.store = store;
+        zoneMap = new ZoneMap(tupleDesc, zoneFile(), lastModified());
     }
 
     /**
@@ -61,48 +154,309 @@ public class HeapFile implements DbFile {
         return tupleDesc;
     }
 
+    /**
+     * Changes the schema of this file to a newer version that adds fields
+     * after the existing ones. Pages written with the old schema are read
+     * with default values for the new fields.
+     *
+     * @see Catalog#addColumn
+     */
+    void setTupleDesc(TupleDesc td) {
+        tupleDesc = TupleDesc.intern(td);
+        zoneMap.close();
+        zoneMap = new ZoneMap(tupleDesc, zoneFile(), lastModified());
+    }
+
+    /**
+     * Returns the time the pages of this file were last written, which
+     * decides whether the zone map sidecar is still usable. It is called
+     * from the constructor, before the fields of a subclass are set.
+     */
+    protected long lastModified() {
+        return file.lastModified();
+    }
+
+    /**
+     * @return the layout of the pages of this file.
+     */
+    public PageFormat getPageFormat() {
+        return format;
+    }
+
+    /**
+     * @return the per-page summaries used to skip pages in filtered scans.
+     */
+    public ZoneMap getZoneMap() {
+        return zoneMap;
+    }
+
     // see DbFile.java for javadocs
     public Page readPage(PageId pid) {
         int tableId = pid.getTableId();
         int pageNumber = pid.pageNumber();
-        int size = Database.getBufferPool().getPageSize();
 
         byte[] data = HeapPage.createEmptyPageData();
-
-        FileInputStream input;
         try {
-            input = new FileInputStream(file);
-            try{
-                input.skip(pageNumber * size);
-                input.read(data);
-                return new HeapPage(new HeapPageId(tableId, pageNumber),data);
-            }catch (IOException e){
-                throw new IllegalArgumentException("");
-            }
-        } catch (IOException e){
-            throw new IllegalArgumentException("HeapFile: ReadPage: file not found");
+            store.readPage(pageNumber, data);
+            TuplePage page = newPage(new HeapPageId(tableId, pageNumber), data);
+            zoneMap.update(pageNumber, page, false);
+            return page;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("HeapFile: readPage: cannot read page " + pageNumber, e);
         }
     }
 
     // see DbFile.java for javadocs
     public void writePage(Page page) throws IOException {
-        PageId pageId = page.getId();
-//        int tableId = pageId.getTableId();
-        int pNo = pageId.pageNumber();
+        store.writePage(page.getId().pageNumber(), page.getPageData());
+        setPageVersion(page);
+        zoneMap.update(page.getId().pageNumber(), (TuplePage) page, true);
+    }
+
+    /**
+     * Creates a page from the bytes read for it. A page that was written
+     * with an older schema version of the table is moved to the current
+     * layout in memory if its used slots all exist there; it is written back
+     * in that layout only once it is modified. Otherwise the page keeps the
+     * old layout.
+     */
+    TuplePage newPage(HeapPageId pid, byte[] data) throws IOException {
+        int version = getPageVersion(pid.pageNumber());
+        if (version == Database.getCatalog().getSchemaVersion(pid.getTableId())) {
+            return format.newPage(pid, data);
+        }
+        TuplePage page = format.newPage(pid, data, version);
+        try {
+            HeapPage upgraded = ((HeapPage) page).upgradeTo(
+                    (HeapPage) format.newPage(pid, HeapPage.createEmptyPageData()));
+            return upgraded != null ? upgraded : page;
+        } catch (DbException e) {
+            throw new IOException("cannot upgrade page " + pid.pageNumber(), e);
+        }
+    }
+
+    /**
+     * @return the file that holds the schema version of each page; it only
+     *         exists once a page has been written with a version other than
+     *         the first.
+     */
+    File versionFile() {
+        return new File(file.getPath() + VERSION_SUFFIX);
+    }
 
-        final int size = Database.getBufferPool().getPageSize();
-        byte[] data = page.getPageData();
+    /**
+     * @return the file that holds the schema versions of this file and the
+     *         defaults of the fields they added; it only exists once a
+     *         column was added.
+     * @see Catalog#addColumn
+     */
+    File schemaFile() {
+        return new File(file.getPath() + SCHEMA_SUFFIX);
+    }
 
-        RandomAccessFile dbfile = new RandomAccessFile(file,"rws");
-        dbfile.skipBytes(pNo * size);
-        dbfile.write(data);
+    /**
+     * @return the file that holds the page summaries of the zone map.
+     */
+    File zoneFile() {
+        return new File(file.getPath() + ZONE_SUFFIX);
+    }
+
+    /**
+     * Returns the files a HeapFile may keep next to the given data file:
+     * its page count, page versions, schema versions and zone map. None of
+     * them need to exist.
+     */
+    public static List<File> sidecarFiles(File f) {
+        List<File> files = new ArrayList<File>();
+        for (String suffix : new String[] { ExtentFile.COUNT_SUFFIX, VERSION_SUFFIX, SCHEMA_SUFFIX, ZONE_SUFFIX }) {
+            files.add(new File(f.getPath() + suffix));
+        }
+        return files;
+    }
+
+    private int getPageVersion(int pageNo) throws IOException {
+        synchronized (versionLock) {
+            if (pageVersions == null) {
+                File f = versionFile();
+                pageVersions = f.exists() ? java.nio.file.Files.readAllBytes(f.toPath()) : new byte[0];
+            }
+            return pageNo < pageVersions.length ? pageVersions[pageNo] & 0xFF : 0;
+        }
+    }
+
+    /**
+     * Records the schema version the page was just written with.
+     */
+    void setPageVersion(Page page) throws IOException {
+        if (!(page instanceof HeapPage)) {
+            return;
+        }
+        int pageNo = page.getId().pageNumber();
+        int version = ((HeapPage) page).getSchemaVersion();
+        synchronized (versionLock) {
+            if (getPageVersion(pageNo) == version) {
+                return;
+            }
+            if (pageNo >= pageVersions.length) {
+                pageVersions = Arrays.copyOf(pageVersions, Math.max(pageNo + 1, 2 * pageVersions.length));
+            }
+            pageVersions[pageNo] = (byte) version;
+            try (RandomAccessFile raf = new RandomAccessFile(versionFile(), "rw")) {
+                if (raf.length() < pageNo) {
+                    raf.setLength(pageNo);
+                }
+                raf.seek(pageNo);
+                raf.write(version);
+            }
+        }
     }
 
     /**
-     * Returns the number of pages in this HeapFile.
+     * Forgets the schema versions of the pages from from up to, but not
+     * including, to, which then read like pages that were never written.
+     */
+    void clearPageVersions(int from, int to) throws IOException {
+        synchronized (versionLock) {
+            getPageVersion(from);
+            int end = Math.min(to, pageVersions.length);
+            if (from >= end) {
+                return;
+            }
+            Arrays.fill(pageVersions, from, end, (byte) 0);
+            File f = versionFile();
+            if (f.exists()) {
+                try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+                    if (raf.length() > from) {
+                        raf.seek(from);
+                        raf.write(new byte[(int) Math.min(end, raf.length()) - from]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of pages in this HeapFile. The count is kept in
+     * memory; the file is only inspected the first time it is needed.
      */
     public int numPages() {
-        return ((int) file.length()) / Database.getBufferPool().getPageSize();
+        return store.numPages();
+    }
+
+    /**
+     * Shrinks this file to the given number of pages, discarding the pages
+     * past it from the BufferPool. The caller must make sure those pages no
+     * longer hold tuples.
+     */
+    protected void truncate(int pages) throws IOException {
+        for (int pageNo = pages; pageNo < numPages(); pageNo++) {
+            Database.getBufferPool().discardPage(new HeapPageId(getId(), pageNo));
+        }
+        store.truncate(pages);
+        zoneMap.truncate(pages);
+    }
+
+    /**
+     * Runs one bounded step of online compaction on behalf of a transaction.
+     * Live tuples are moved from the last non-empty pages into the earliest
+     * pages with room for them, and trailing pages that end up empty
+     * are cut off the file. Pages changed by a step are left dirty in the
+     * BufferPool under tid; the caller writes them back with
+     * {@link BufferPool#flushPages} once the step succeeded, as
+     * {@link Vacuum} does. Only trailing pages that are empty and clean,
+     * i.e. empty on disk and not changed by any transaction, are truncated;
+     * pages emptied by a step are cut off by a later step, after they were
+     * written back.
+     * <p>
+     * Each moved tuple gets a new RecordId; the old and new ids are added to
+     * relocated so that callers can fix up any references they hold.
+     *
+     * @param tid The transaction performing the compaction
+     * @param maxPages the maximum number of pages to visit in this step
+     * @param relocated receives an old to new RecordId entry per moved tuple
+     * @return true if the file is fully compacted, false if more steps are
+     *         needed
+     */
+    public boolean compact(TransactionId tid, int maxPages, Map<RecordId, RecordId> relocated)
+            throws DbException, IOException, TransactionAbortedException {
+        // not synchronized on this: the BufferPool writes pages back into
+        // the file with its own lock held, so no lock the file takes there
+        // may be held while fetching pages
+        synchronized (compactLock) {
+            int visited = 0;
+            int head = compactHead;
+            int tail = numPages() - 1;
+            boolean done = false;
+
+            while (visited < maxPages) {
+                if (tail <= head) {
+                    done = true;
+                    break;
+                }
+                TuplePage last = compactionPage(tid, tail);
+                visited++;
+                Iterator<Tuple> it = last.iterator();
+                if (!it.hasNext()) {
+                    tail--;
+                    continue;
+                }
+                Tuple t = it.next();
+
+                TuplePage first = null;
+                while (head < tail && visited < maxPages) {
+                    first = compactionPage(tid, head);
+                    visited++;
+                    if (first.hasRoomFor(t)) {
+                        break;
+                    }
+                    first = null;
+                    head++;
+                }
+                if (first == null) {
+                    done = head >= tail;
+                    break;
+                }
+
+                while (t != null && first.hasRoomFor(t)) {
+                    RecordId from = t.getRecordId();
+                    last.deleteTuple(t);
+                    first.insertTuple(t);
+                    zoneMap.add(first.getId().pageNumber(), t);
+                    relocated.put(from, t.getRecordId());
+                    t = it.hasNext() ? it.next() : null;
+                }
+                first.markDirty(true, tid);
+                last.markDirty(true, tid);
+            }
+            compactHead = head;
+
+            int pages = numPages();
+            while (pages > 1) {
+                TuplePage page = compactionPage(tid, pages - 1);
+                if (!page.isEmpty()) {
+                    break;
+                }
+                if (page.isDirty() != null) {
+                    // emptied by a transaction that has not committed yet
+                    done = false;
+                    break;
+                }
+                pages--;
+            }
+            if (pages < numPages()) {
+                truncate(pages);
+            }
+            if (done) {
+                compactHead = 0;
+            }
+            return done;
+        }
+    }
+
+    private TuplePage compactionPage(TransactionId tid, int pageNo)
+            throws DbException, TransactionAbortedException {
+        return (TuplePage) Database.getBufferPool().getPage(tid,
+                new HeapPageId(getId(), pageNo), Permissions.READ_WRITE);
     }
 
     // see DbFile.java for javadocs
@@ -125,15 +479,16 @@ public class HeapFile implements DbFile {
 
         for (int pageNo = 0; pageNo < numPages + 1; pageNo++){
             HeapPageId id = new HeapPageId(getId(), pageNo);
-            HeapPage page;
+            TuplePage page;
             if (pageNo < numPages){
-                page = (HeapPage) Database.getBufferPool().getPage(tid, id, Permissions.READ_WRITE);
+                page = (TuplePage) Database.getBufferPool().getPage(tid, id, Permissions.READ_WRITE);
             } else {
-                page = new HeapPage(id, HeapPage.createEmptyPageData());
+                page = format.newPage(id, HeapPage.createEmptyPageData());
             }
 
-            if (page.getNumEmptySlots() > 0){
+            if (page.hasRoomFor(t)){
                 page.insertTuple(t);
+                zoneMap.add(pageNo, t);
 
                 if(pageNo < numPages){
                     affected.add(page);
@@ -167,7 +522,7 @@ public class HeapFile implements DbFile {
         HeapPageId pid = (HeapPageId) rid.getPageId();
         if (pid.getTableId() == getId()){
 //            int pageNo = pid.pageNumber();
-            HeapPage page = (HeapPage) Database.getBufferPool().getPage(tid,pid,Permissions.READ_WRITE);
+            TuplePage page = (TuplePage) Database.getBufferPool().getPage(tid,pid,Permissions.READ_WRITE);
             page.deleteTuple(t);
             deleted.add(page);
             return deleted;
@@ -183,54 +538,311 @@ public class HeapFile implements DbFile {
      * @return an iterator over all the tuples stored in this DbFile.
      */
     public DbFileIterator iterator(TransactionId tid) {
-        return new HeapFileIterator(tid);
+        return new HeapFileIterator(tid, 0, numPages(), null, null);
+    }
+
+    /**
+     * Returns an iterator over the tuples of this file that satisfy the
+     * predicate. Pages that the zone map shows cannot hold a matching
+     * tuple are skipped without being fetched. On HeapPages the predicate is
+     * evaluated on the slot bytes, and a Tuple is only built for the tuples
+     * that match.
+     *
+     * @see ZoneMap
+     * @see HeapPage#matches
+     */
+    public DbFileIterator iterator(TransactionId tid, Predicate predicate) {
+        return new HeapFileIterator(tid, 0, numPages(), predicate, null);
+    }
+
+    /**
+     * Returns an iterator over the tuples of this file that satisfy the
+     * predicate, with only the given fields. The tuples have the schema
+     * <code>getTupleDesc().project(columns)</code>; on HeapPages only those
+     * fields are decoded from each slot.
+     *
+     * @param predicate the filter, with field numbers of the table; null to
+     *            return all tuples
+     * @param columns the indexes of the fields to return, in order
+     * @see TupleDesc#project
+     */
+    public DbFileIterator iterator(TransactionId tid, Predicate predicate, int[] columns) {
+        return new HeapFileIterator(tid, 0, numPages(), predicate, columns.clone());
+    }
+
+    /**
+     * Returns an iterator over the tuples stored on a range of pages of this
+     * file, so that disjoint ranges can be scanned independently.
+     *
+     * @param fromPage the first page to scan
+     * @param toPage one past the last page to scan
+     * @return an iterator over the tuples on pages [fromPage, toPage).
+     */
+    public DbFileIterator iterator(TransactionId tid, int fromPage, int toPage) {
+        return new HeapFileIterator(tid, fromPage, toPage, null, null);
+    }
+
+    /**
+     * Returns an iterator over the given fields of the tuples stored on
+     * pages [fromPage, toPage) that satisfy the predicate.
+     *
+     * @param predicate the filter, or null to return all tuples
+     * @param columns the indexes of the fields to return, or null for all
+     * @see #iterator(TransactionId, Predicate, int[])
+     */
+    public DbFileIterator iterator(TransactionId tid, int fromPage, int toPage,
+            Predicate predicate, int[] columns) {
+        return new HeapFileIterator(tid, fromPage, toPage, predicate,
+                columns == null ? null : columns.clone());
+    }
+
+    /**
+     * Returns a cursor over all the tuples stored in this file. Pages are
+     * fetched through the BufferPool as the cursor reaches them, and fields
+     * are read straight from the page data.
+     *
+     * @see TupleCursor
+     */
+    public TupleCursor cursor(TransactionId tid) {
+        return new HeapFileCursor(tid, 0, numPages());
+    }
+
+    /**
+     * Returns a cursor over the tuples stored on pages [fromPage, toPage).
+     */
+    public TupleCursor cursor(TransactionId tid, int fromPage, int toPage) {
+        return new HeapFileCursor(tid, fromPage, toPage);
+    }
+
+    /**
+     * Returns an iterator over the tuples of this file that satisfy the
+     * predicate, in batches. HeapPages are decoded into the batches column
+     * by column; pages that the zone map shows cannot hold a matching tuple
+     * are skipped.
+     *
+     * @param predicate the filter to apply, or null to return all tuples
+     * @see TupleBatch
+     */
+    public BatchIterator batchIterator(TransactionId tid, Predicate predicate) {
+        return new HeapFileBatchIterator(tid, 0, numPages(), predicate, null);
+    }
+
+    /**
+     * Returns an iterator over the given fields of the tuples of this file
+     * that satisfy the predicate, in batches whose schema is
+     * <code>getTupleDesc().project(columns)</code>.
+     *
+     * @see #iterator(TransactionId, Predicate, int[])
+     */
+    public BatchIterator batchIterator(TransactionId tid, Predicate predicate, int[] columns) {
+        return new HeapFileBatchIterator(tid, 0, numPages(), predicate, columns.clone());
+    }
+
+    private class HeapFileBatchIterator implements BatchIterator {
+        private final TransactionId transactionId;
+        private final int fromPage;
+        private final int toPage;
+        private final Predicate predicate;
+        private final int[] columns;
+        private final TupleDesc td;
+        private TupleBatch batch;
+        private int pageNo;
+        // where to continue on the current page: a slot for a HeapPage, a
+        // cursor for other pages
+        private HeapPage page;
+        private int slot;
+        private TupleCursor cursor;
+
+        public HeapFileBatchIterator(TransactionId tid, int fromPage, int toPage,
+                Predicate predicate, int[] columns) {
+            this.transactionId = tid;
+            this.fromPage = fromPage;
+            this.toPage = toPage;
+            this.predicate = predicate;
+            this.columns = columns;
+            this.td = columns == null ? tupleDesc : tupleDesc.project(columns);
+        }
+
+        public void open() {
+            batch = new TupleBatch(td);
+            pageNo = fromPage - 1;
+            page = null;
+            cursor = null;
+        }
+
+        public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+            if (batch == null) {
+                throw new IllegalStateException("iterator is not open");
+            }
+            batch.clear();
+            while (!batch.isFull()) {
+                if (page != null) {
+                    slot = page.fillBatch(slot, batch, predicate, columns);
+                    if (slot < 0) {
+                        page = null;
+                    }
+                } else if (cursor != null) {
+                    while (!batch.isFull() && cursor.advance()) {
+                        Tuple t = cursor.getTuple();
+                        if (predicate == null || predicate.filter(t)) {
+                            batch.addTuple(columns == null ? t : t.project(columns, td));
+                        }
+                    }
+                    if (!batch.isFull()) {
+                        cursor = null;
+                    }
+                } else if (!nextPage()) {
+                    break;
+                }
+            }
+            return batch.size() == 0 ? null : batch;
+        }
+
+        private boolean nextPage() throws DbException, TransactionAbortedException {
+            do {
+                if (++pageNo >= toPage) {
+                    pageNo = toPage;
+                    return false;
+                }
+            } while (predicate != null && !zoneMap.mightMatch(pageNo, predicate));
+            Page p = Database.getBufferPool().getPage(transactionId,
+                    new HeapPageId(getId(), pageNo), Permissions.READ_ONLY);
+            if (p instanceof HeapPage) {
+                page = (HeapPage) p;
+                slot = 0;
+            } else {
+                cursor = ((TuplePage) p).cursor();
+            }
+            return true;
+        }
+
+        public void rewind() {
+            open();
+        }
+
+        public TupleDesc getTupleDesc() {
+            return td;
+        }
+
+        public void close() {
+            batch = null;
+            page = null;
+            cursor = null;
+        }
     }
 
-    private class HeapFileIterator implements DbFileIterator{
+    private class HeapFileCursor implements TupleCursor {
+        private final TransactionId transactionId;
+        private final int toPage;
+        private int pageNo;
+        private TupleCursor page;
+
+        public HeapFileCursor(TransactionId tid, int fromPage, int toPage) {
+            this.transactionId = tid;
+            this.pageNo = fromPage - 1;
+            this.toPage = toPage;
+        }
+
+        public boolean advance() throws DbException, TransactionAbortedException {
+            while (page == null || !page.advance()) {
+                if (++pageNo >= toPage) {
+                    page = null;
+                    pageNo = toPage;
+                    return false;
+                }
+                page = ((TuplePage) Database.getBufferPool().getPage(transactionId,
+                        new HeapPageId(getId(), pageNo), Permissions.READ_ONLY)).cursor();
+            }
+            return true;
+        }
+
+        public int getInt(int field) {
+            return page.getInt(field);
+        }
+
+        public long getLong(int field) {
+            return page.getLong(field);
+        }
+
+        public double getDouble(int field) {
+            return page.getDouble(field);
+        }
+
+        public String getString(int field) {
+            return page.getString(field);
+        }
+
+        public Field getField(int field) {
+            return page.getField(field);
+        }
+
+        public RecordId getRecordId() {
+            return page.getRecordId();
+        }
+
+        public Tuple getTuple() {
+            return page.getTuple();
+        }
+    }
+
+    private class HeapFileIterator extends AbstractDbFileIterator {
 
         private Integer pgCursor;
         private Iterator<Tuple> tupleIterator;
         private final TransactionId transactionId;
         private final int tableId;
-        private final int numPages;
+        private final int fromPage;
+        private final int toPage;
+        private final Predicate predicate;
+        private final int[] columns;
+        private final TupleDesc projected;
+        // true if tupleIterator already filters and projects the tuples
+        private boolean pushedDown;
 
-        public HeapFileIterator(TransactionId tid){
+        public HeapFileIterator(TransactionId tid, int fromPage, int toPage, Predicate predicate,
+                int[] columns){
             pgCursor = null;
             tupleIterator = null;
             transactionId = tid;
             tableId = getId();
-            numPages = numPages();
+            this.fromPage = fromPage;
+            this.toPage = toPage;
+            this.predicate = predicate;
+            this.columns = columns;
+            this.projected = columns == null ? null : tupleDesc.project(columns);
         }
 
         @Override
         public void open() throws DbException, TransactionAbortedException {
-            pgCursor = 0;
-            tupleIterator = getTupleIterator(pgCursor);
-        }
-
-        @Override
-        public boolean hasNext() throws DbException, TransactionAbortedException {
-            if (pgCursor != null){
-                while (pgCursor < numPages - 1){
-                    if(tupleIterator.hasNext()){
-                        return true;
-                    } else {
-                        pgCursor += 1;
-                        tupleIterator = getTupleIterator(pgCursor);
-                    }
-                }
-                return tupleIterator.hasNext();
+            pgCursor = fromPage;
+            if (fromPage < toPage) {
+                tupleIterator = getTupleIterator(pgCursor);
             } else {
-                return false;
+                tupleIterator = Collections.<Tuple>emptyList().iterator();
             }
         }
 
         @Override
-        public Tuple next() throws DbException, TransactionAbortedException, NoSuchElementException {
-            if (hasNext()) {
-                return tupleIterator.next();
+        protected Tuple readNext() throws DbException, TransactionAbortedException {
+            if (pgCursor == null) {
+                return null;
+            }
+            while (true) {
+                while (tupleIterator.hasNext()) {
+                    Tuple t = tupleIterator.next();
+                    if (pushedDown) {
+                        return t;
+                    }
+                    if (predicate == null || predicate.filter(t)) {
+                        return columns == null ? t : t.project(columns, projected);
+                    }
+                }
+                if (pgCursor >= toPage - 1) {
+                    return null;
+                }
+                pgCursor += 1;
+                tupleIterator = getTupleIterator(pgCursor);
             }
-            throw new NoSuchElementException("HeapFileIterator: no next tuple");
         }
 
         @Override
@@ -241,14 +853,28 @@ public class HeapFile implements DbFile {
 
         @Override
         public void close() {
+            super.close();
             pgCursor = null;
             tupleIterator = null;
         }
 
         private Iterator<Tuple> getTupleIterator(int pageNo) throws TransactionAbortedException, DbException{
+            pushedDown = true;
+            if (predicate != null && !zoneMap.mightMatch(pageNo, predicate)) {
+                return Collections.<Tuple>emptyList().iterator();
+            }
             PageId pageId = new HeapPageId(tableId, pageNo);
-            return((HeapPage)Database.getBufferPool()
-                                     .getPage(transactionId, pageId, Permissions.READ_ONLY)).iterator();
+            Page page = Database.getBufferPool().getPage(transactionId, pageId, Permissions.READ_ONLY);
+            if (predicate == null && columns == null) {
+                return ((TuplePage) page).iterator();
+            }
+            if (page instanceof HeapPage) {
+                // evaluated on the page bytes; only matching tuples are built,
+                // with only the requested fields
+                return ((HeapPage) page).iterator(predicate, columns, projected);
+            }
+            pushedDown = false;
+            return ((TuplePage) page).iterator();
         }
     }
 }
@@ -1,7 +1,9 @@
 package simpledb;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * HeapFileEncoder reads a comma delimited text file or accepts
@@ -90,10 +92,27 @@ public class HeapFileEncoder {
   public static void convert(File inFile, File outFile, int npagebytes,
                  int numFields, Type[] typeAr, char fieldSeparator)
       throws IOException {
+      convert(inFile,outFile,npagebytes,numFields,typeAr,null,fieldSeparator);
+  }
 
+   /** Convert the specified input text file into a binary page file, as
+    * above, with the string fields written at their declared lengths.
+    *
+    * @param stringLengths the maximum length of each string field, as in
+    *   {@link TupleDesc#TupleDesc(Type[], String[], int[])}; null for the
+    *   default length
+    */
+  public static void convert(File inFile, File outFile, int npagebytes,
+                 int numFields, Type[] typeAr, int[] stringLengths, char fieldSeparator)
+      throws IOException {
+
+      int[] maxLens = new int[numFields];
+      int[] fieldLens = new int[numFields];
       int nrecbytes = 0;
       for (int i = 0; i < numFields ; i++) {
-          nrecbytes += typeAr[i].getLen();
+          maxLens[i] = stringLengths == null || stringLengths[i] == 0 ? Type.STRING_LEN : stringLengths[i];
+          fieldLens[i] = typeAr[i] == Type.STRING_TYPE ? maxLens[i] + 4 : typeAr[i].getLen();
+          nrecbytes += fieldLens[i];
       }
       int nrecords = (npagebytes * 8) /  (nrecbytes * 8 + 1);  //floor comes for free
       
@@ -102,7 +121,6 @@ public class HeapFileEncoder {
     int nheaderbytes = (nrecords / 8);
     if (nheaderbytes * 8 < nrecords)
         nheaderbytes++;  //ceiling
-    int nheaderbits = nheaderbytes * 8;
 
     BufferedReader br = new BufferedReader(new FileReader(inFile));
     FileOutputStream os = new FileOutputStream(outFile);
@@ -115,10 +133,10 @@ public class HeapFileEncoder {
     int npages = 0;
     int fieldNo = 0;
 
-    ByteArrayOutputStream headerBAOS = new ByteArrayOutputStream(nheaderbytes);
-    DataOutputStream headerStream = new DataOutputStream(headerBAOS);
-    ByteArrayOutputStream pageBAOS = new ByteArrayOutputStream(npagebytes);
-    DataOutputStream pageStream = new DataOutputStream(pageBAOS);
+    // the page is built in place: the header, then the records from
+    // offset nheaderbytes, each field written at its absolute offset
+    ByteBuffer page = ByteBuffer.allocate(npagebytes);
+    int pos = nheaderbytes;
 
     boolean done = false;
     boolean first = true;
@@ -138,25 +156,25 @@ public class HeapFileEncoder {
             first = false;
         if (c == fieldSeparator || c == '\n' || c == '\r') {
             String s = new String(buf, 0, curpos);
+            // a bad value is left as zeroes, which keeps the record aligned
             if (typeAr[fieldNo] == Type.INT_TYPE) {
                 try {
-                    pageStream.writeInt(Integer.parseInt(s.trim()));
+                    page.putInt(pos, Integer.parseInt(s.trim()));
                 } catch (NumberFormatException e) {
                     System.out.println ("BAD LINE : " + s);
                 }
             }
             else   if (typeAr[fieldNo] == Type.STRING_TYPE) {
-                s = s.trim();
-                int overflow = Type.STRING_LEN - s.length();
-                if (overflow < 0) {
-                    String news = s.substring(0,Type.STRING_LEN);
-                    s  = news;
+                new StringField(s.trim(), maxLens[fieldNo]).serialize(page, pos);
+            }
+            else {
+                try {
+                    typeAr[fieldNo].parse(s).serialize(page, pos);
+                } catch (IllegalArgumentException e) {
+                    System.out.println ("BAD LINE : " + s);
                 }
-                pageStream.writeInt(s.length());
-                pageStream.writeBytes(s);
-                while (overflow-- > 0)
-                    pageStream.write((byte)0);
             }
+            pos += fieldLens[fieldNo];
             curpos = 0;
             if (c == '\n')
                 fieldNo = 0;
@@ -183,38 +201,14 @@ public class HeapFileEncoder {
         if (recordcount >= nrecords
             || done && recordcount > 0
             || done && npages == 0) {
-            int i = 0;
-            byte headerbyte = 0;
-            
-            for (i=0; i<nheaderbits; i++) {
-                if (i < recordcount)
-                    headerbyte |= (1 << (i % 8));
-                
-                if (((i+1) % 8) == 0) {
-                    headerStream.writeByte(headerbyte);
-                    headerbyte = 0;
-                }
-            }
-            
-            if (i % 8 > 0)
-                headerStream.writeByte(headerbyte);
-            
-            // pad the rest of the page with zeroes
-            
-            for (i=0; i<(npagebytes - (recordcount * nrecbytes + nheaderbytes)); i++)
-                pageStream.writeByte(0);
-            
-            // write header and body to file
-            headerStream.flush();
-            headerBAOS.writeTo(os);
-            pageStream.flush();
-            pageBAOS.writeTo(os);
-            
-            // reset header and body for next page
-            headerBAOS = new ByteArrayOutputStream(nheaderbytes);
-            headerStream = new DataOutputStream(headerBAOS);
-            pageBAOS = new ByteArrayOutputStream(npagebytes);
-            pageStream = new DataOutputStream(pageBAOS);
+            for (int i = 0; i < recordcount; i++)
+                page.put(i / 8, (byte) (page.get(i / 8) | (1 << (i % 8))));
+
+            // the rest of the page is already zeroes; write it to file and
+            // reset it for the next page
+            os.write(page.array());
+            Arrays.fill(page.array(), (byte) 0);
+            pos = nheaderbytes;
             
             recordcount = 0;
             npages++;
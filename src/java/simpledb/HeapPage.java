@@ -2,6 +2,8 @@ package simpledb;
 
 import java.util.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Each instance of HeapPage stores data for one page of HeapFiles and 
@@ -11,14 +13,29 @@ import java.io.*;
  * @see BufferPool
  *
  */
-public class HeapPage implements Page {
+public class HeapPage implements TuplePage {
 
     final HeapPageId pid;
+    // the schema the page was written with, which decides its layout; tuples
+    // are returned with the table's current schema, see Catalog#addColumn
     final TupleDesc td;
-    final byte header[];
+    private final TupleDesc tableTd;
+    private final int schemaVersion;
+    // the slot bitmap as 64-bit words: slot i is bit i % 64 of word i / 64,
+    // the same bit order as the header bytes on disk
+    final long header[];
+    final int headerSize;
+    private int numUsed;
     final Tuple tuples[];
     final int numSlots;
 
+    // the serialized page image, kept up to date by insertTuple/deleteTuple;
+    // slots are decoded from it on first access
+    final ByteBuffer data;
+    final int tupleSize;
+    final int[] fieldOffsets;
+
+    // null until the page is first modified after a load or commit
     byte[] oldData;
     private final Byte oldDataLock=new Byte((byte)0);
 
@@ -39,27 +56,48 @@ public class HeapPage implements Page {
      * @see BufferPool#getPageSize()
      */
     public HeapPage(HeapPageId id, byte[] data) throws IOException {
+        this(id, data, Database.getCatalog().getSchemaVersion(id.getTableId()));
+    }
+
+    /**
+     * Create a HeapPage from data written with the given schema version of
+     * its table. Fields of the page's tuples that were added to the table
+     * after that version are read as their default values. A page with an
+     * older version accepts deletes, but no inserts.
+     *
+     * @see Catalog#addColumn
+     */
+    HeapPage(HeapPageId id, byte[] data, int schemaVersion) throws IOException {
         this.pid = id;
-        this.td = Database.getCatalog().getTupleDesc(id.getTableId());
+        this.schemaVersion = schemaVersion;
+        this.tableTd = Database.getCatalog().getTupleDesc(id.getTableId());
+        this.td = Database.getCatalog().getTupleDesc(id.getTableId(), schemaVersion);
         this.numSlots = getNumTuples();
-        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
-
-        // allocate and read the header slots of this page
-        header = new byte[getHeaderSize()];
-        for (int i=0; i<header.length; i++)
-            header[i] = dis.readByte();
+        this.tupleSize = td.getSize();
 
-        tuples = new Tuple[numSlots];
-        try{
-            // allocate and read the actual records of this page
-            for (int i=0; i<tuples.length; i++)
-                tuples[i] = readNextTuple(dis,i);
-        }catch(NoSuchElementException e){
-            e.printStackTrace();
+        fieldOffsets = new int[td.numFields()];
+        for (int j = 0; j < fieldOffsets.length; j++) {
+            fieldOffsets[j] = td.getFieldOffset(j);
         }
-        dis.close();
 
-        setBeforeImage();
+        // the header is copied out; tuples are decoded lazily from the image,
+        // which is our own copy since insertTuple and deleteTuple patch it
+        headerSize = getHeaderSize();
+        if (data.length < headerSize + numSlots * tupleSize) {
+            throw new IOException("HeapPage: page data is too short");
+        }
+        header = new long[(numSlots + 63) / 64];
+        for (int i = 0; i < headerSize; i++) {
+            header[i / 8] |= (data[i] & 0xFFL) << (8 * (i % 8));
+        }
+        if (numSlots % 64 != 0) {
+            header[header.length - 1] &= (1L << numSlots) - 1;
+        }
+        for (long word : header) {
+            numUsed += Long.bitCount(word);
+        }
+        this.data = ByteBuffer.wrap(Arrays.copyOf(data, BufferPool.getPageSize()));
+        tuples = new Tuple[numSlots];
     }
 
     /** Retrieve the number of tuples on this page.
@@ -81,12 +119,7 @@ public class HeapPage implements Page {
      -- used by recovery */
     public HeapPage getBeforeImage(){
         try {
-            byte[] oldDataRef = null;
-            synchronized(oldDataLock)
-            {
-                oldDataRef = oldData;
-            }
-            return new HeapPage(pid,oldDataRef);
+            return new HeapPage(pid, beforeImageData(), schemaVersion);
         } catch (IOException e) {
             e.printStackTrace();
             //should never happen -- we parsed it OK before!
@@ -95,10 +128,38 @@ public class HeapPage implements Page {
         return null;
     }
 
+    /**
+     * @return the data of the before image: the saved copy, or the current
+     *         image if the page was not modified since the last load or commit.
+     */
+    byte[] beforeImageData() {
+        synchronized(oldDataLock)
+        {
+            return oldData != null ? oldData : data.array();
+        }
+    }
+
+    /**
+     * Makes the current contents of this page its before image. The image
+     * is not copied until the page is next modified.
+     */
     public void setBeforeImage() {
         synchronized(oldDataLock)
         {
-            oldData = getPageData().clone();
+            oldData = null;
+        }
+    }
+
+    /**
+     * Saves the current contents as the before image unless one was already
+     * taken since the last load or commit. Called before every modification.
+     */
+    private void copyOnWrite() {
+        synchronized(oldDataLock)
+        {
+            if (oldData == null) {
+                oldData = getPageData();
+            }
         }
     }
 
@@ -110,109 +171,206 @@ public class HeapPage implements Page {
     }
 
     /**
-     * Suck up tuples from the source file.
+     * @return the schema version of the table the page was written with.
      */
-    private Tuple readNextTuple(DataInputStream dis, int slotId) throws NoSuchElementException {
-        // if associated bit is not set, read forward to the next tuple, and
-        // return null.
-        if (!isSlotUsed(slotId)) {
-            for (int i=0; i<td.getSize(); i++) {
-                try {
-                    dis.readByte();
-                } catch (IOException e) {
-                    throw new NoSuchElementException("error reading empty tuple");
-                }
+    int getSchemaVersion() {
+        return schemaVersion;
+    }
+
+    /**
+     * Copies the tuples of this page, which must have been written with an
+     * older schema version, into the same slots of target, an empty page
+     * with the current schema.
+     *
+     * @return target, or null if a used slot of this page does not exist in
+     *         target, whose tuples are larger.
+     */
+    HeapPage upgradeTo(HeapPage target) throws DbException {
+        for (int i = nextUsedSlot(0); i >= 0; i = nextUsedSlot(i + 1)) {
+            if (i >= target.numSlots) {
+                return null;
             }
-            return null;
         }
+        for (int i = nextUsedSlot(0); i >= 0; i = nextUsedSlot(i + 1)) {
+            target.writeSlot(i, getTuple(i));
+            target.markSlotUsed(i, true);
+        }
+        return target;
+    }
 
-        // read fields in the tuple
-        Tuple t = new Tuple(td);
-        RecordId rid = new RecordId(pid, slotId);
-        t.setRecordId(rid);
-        try {
-            for (int j=0; j<td.numFields(); j++) {
-                Field f = td.getFieldType(j).parse(dis);
-                t.setField(j, f);
+    /**
+     * @return the default value of a field added to the table after this
+     *         page was written.
+     */
+    private Field defaultValue(int field) {
+        return Database.getCatalog().getDefaultValue(pid.getTableId(), field);
+    }
+
+    /**
+     * @return the default value of a field added after this page's schema
+     *         version, serialized at the start of a new buffer
+     */
+    private ByteBuffer defaultData(int field) {
+        TupleDesc current = Database.getCatalog().getTupleDesc(pid.getTableId());
+        ByteBuffer buf = ByteBuffer.allocate(current.getFieldLength(field));
+        defaultValue(field).serialize(buf, 0);
+        return buf;
+    }
+
+    /**
+     * @return the offset in the page data of the given field of a slot.
+     *         Subclasses with a different layout override this.
+     */
+    int fieldOffset(int slotId, int field) {
+        return headerSize + slotId * tupleSize + fieldOffsets[field];
+    }
+
+    /**
+     * Returns the tuple stored in the given slot, decoding it from the page
+     * data the first time it is accessed.
+     *
+     * @param slotId the slot to read
+     * @return the tuple in the slot, or null if the slot is empty.
+     */
+    public Tuple getTuple(int slotId) {
+        if (slotId < 0 || slotId >= numSlots || !isSlotUsed(slotId)) {
+            return null;
+        }
+        Tuple t = tuples[slotId];
+        if (t == null) {
+            t = new Tuple(tableTd);
+            t.setRecordId(new RecordId(pid, slotId));
+            for (int j = 0; j < fieldOffsets.length; j++) {
+                t.setFieldBytes(j, data.array(), fieldOffset(slotId, j));
             }
-        } catch (java.text.ParseException e) {
-            e.printStackTrace();
-            throw new NoSuchElementException("parsing error!");
+            for (int j = fieldOffsets.length; j < tableTd.numFields(); j++) {
+                t.setField(j, defaultValue(j));
+            }
+            tuples[slotId] = t;
         }
-
         return t;
     }
 
     /**
-     * Generates a byte array representing the contents of this page.
-     * Used to serialize this page to disk.
-     * <p>
-     * The invariant here is that it should be possible to pass the byte
-     * array generated by getPageData to the HeapPage constructor and
-     * have it produce an identical HeapPage object.
+     * Returns a new tuple with only the given fields of the tuple stored in
+     * a slot. The other fields are not decoded.
      *
-     * @see #HeapPage
-     * @return A byte array correspond to the bytes of this page.
+     * @param slotId the slot to read
+     * @param columns the indexes of the fields to read, in the table's
+     *            TupleDesc
+     * @param projected the schema of the result, as returned by
+     *            {@link TupleDesc#project}
+     * @return the tuple, or null if the slot is empty.
      */
-    public byte[] getPageData() {
-        int len = BufferPool.getPageSize();
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(len);
-        DataOutputStream dos = new DataOutputStream(baos);
-
-        // create the header of the page
-        for (int i=0; i<header.length; i++) {
-            try {
-                dos.writeByte(header[i]);
-            } catch (IOException e) {
-                // this really shouldn't happen
-                e.printStackTrace();
+    public Tuple getTuple(int slotId, int[] columns, TupleDesc projected) {
+        if (slotId < 0 || slotId >= numSlots || !isSlotUsed(slotId)) {
+            return null;
+        }
+        Tuple t = new Tuple(projected);
+        t.setRecordId(new RecordId(pid, slotId));
+        for (int k = 0; k < columns.length; k++) {
+            if (columns[k] < fieldOffsets.length) {
+                t.setFieldBytes(k, data.array(), fieldOffset(slotId, columns[k]));
+            } else {
+                t.setField(k, defaultValue(columns[k]));
             }
         }
+        return t;
+    }
 
-        // create the tuples
-        for (int i=0; i<tuples.length; i++) {
-
-            // empty slot
-            if (!isSlotUsed(i)) {
-                for (int j=0; j<td.getSize(); j++) {
-                    try {
-                        dos.writeByte(0);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+    /**
+     * Returns a single field of the tuple stored in the given slot, without
+     * decoding the rest of the tuple.
+     *
+     * @param slotId the slot to read
+     * @param field the index of the field in the page's TupleDesc
+     * @return the field, or null if the slot is empty.
+     */
+    public Field getField(int slotId, int field) {
+        if (slotId < 0 || slotId >= numSlots || !isSlotUsed(slotId)) {
+            return null;
+        }
+        Tuple t = tuples[slotId];
+        if (t != null) {
+            return t.getField(field);
+        }
+        if (field >= fieldOffsets.length) {
+            return defaultValue(field);
+        }
+        return td.parseField(field, data, fieldOffset(slotId, field));
+    }
 
-                }
-                continue;
+    /**
+     * Adds the tuples in the used slots of this page, starting at the given
+     * slot, to a batch until it is full. Values are decoded column by column
+     * straight from the page data.
+     *
+     * @param fromSlot the first slot to look at
+     * @param batch the batch to fill
+     * @param predicate if not null, only the tuples that satisfy it are
+     *            added; it is evaluated with {@link #matches}
+     * @param columns the table fields that make up the batch's columns, or
+     *            null for all of them
+     * @return the slot to continue from, or -1 if the page has no more
+     *         tuples
+     */
+    int fillBatch(int fromSlot, TupleBatch batch, Predicate predicate, int[] columns) {
+        int first = batch.size();
+        int slot = nextUsedSlot(Math.max(fromSlot, 0));
+        while (slot >= 0 && !batch.isFull()) {
+            if (predicate == null || matches(slot, predicate)) {
+                batch.addRow(pid, slot);
             }
-
-            // non-empty slot
-            for (int j=0; j<td.numFields(); j++) {
-                Field f = tuples[i].getField(j);
-                try {
-                    f.serialize(dos);
-
-                } catch (IOException e) {
-                    e.printStackTrace();
+            slot = nextUsedSlot(slot + 1);
+        }
+        int last = batch.size();
+        for (int k = 0; k < batch.getTupleDesc().numFields(); k++) {
+            int j = columns == null ? k : columns[k];
+            Type type = tableTd.getFieldType(j);
+            if (j >= fieldOffsets.length) {
+                Field value = defaultValue(j);
+                for (int row = first; row < last; row++) {
+                    batch.setField(k, row, value);
+                }
+            } else if (type == Type.INT_TYPE) {
+                int[] column = batch.getIntColumn(k);
+                for (int row = first; row < last; row++) {
+                    column[row] = data.getInt(fieldOffset(batch.getSlot(row), j));
+                }
+            } else if (type == Type.DOUBLE_TYPE) {
+                double[] column = batch.getDoubleColumn(k);
+                for (int row = first; row < last; row++) {
+                    column[row] = data.getDouble(fieldOffset(batch.getSlot(row), j));
+                }
+            } else if (type == Type.STRING_TYPE) {
+                for (int row = first; row < last; row++) {
+                    batch.setField(k, row, td.parseField(j, data, fieldOffset(batch.getSlot(row), j)));
+                }
+            } else {
+                long[] column = batch.getLongColumn(k);
+                for (int row = first; row < last; row++) {
+                    column[row] = data.getLong(fieldOffset(batch.getSlot(row), j));
                 }
             }
         }
+        return slot;
+    }
 
-        // padding
-        int zerolen = BufferPool.getPageSize() - (header.length + td.getSize() * tuples.length); //- numSlots * td.getSize();
-        byte[] zeroes = new byte[zerolen];
-        try {
-            dos.write(zeroes, 0, zerolen);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        try {
-            dos.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        return baos.toByteArray();
+    /**
+     * Generates a byte array representing the contents of this page.
+     * Used to serialize this page to disk. The page keeps its serialized
+     * image up to date as tuples are inserted and deleted, so this is a
+     * plain copy of that image.
+     * <p>
+     * The invariant here is that it should be possible to pass the byte
+     * array generated by getPageData to the HeapPage constructor and
+     * have it produce an identical HeapPage object.
+     *
+     * @see #HeapPage
+     * @return A byte array correspond to the bytes of this page.
+     */
+    public byte[] getPageData() {
+        return data.array().clone();
     }
 
     /**
@@ -240,12 +398,16 @@ public class HeapPage implements Page {
         assert t != null;
         RecordId recordId = t.getRecordId();
         if (recordId != null && pid.equals(recordId.getPageId())){
-            for (int i = 0; i < numSlots; i ++){
-                if (isSlotUsed(i) && t.getRecordId().equals(tuples[i].getRecordId())){
-                    markSlotUsed(i, false);
-                    tuples[i] = null;
-                    return;
+            int i = recordId.tupleno();
+            if (i >= 0 && i < numSlots && isSlotUsed(i)){
+                copyOnWrite();
+                markSlotUsed(i, false);
+                tuples[i] = null;
+                for (int j = 0; j < fieldOffsets.length; j++) {
+                    int offset = fieldOffset(i, j);
+                    Arrays.fill(data.array(), offset, offset + td.getFieldLength(j), (byte) 0);
                 }
+                return;
             }
             throw new DbException("deleteTuple: the slot is empty");
         }
@@ -262,19 +424,34 @@ public class HeapPage implements Page {
     public void insertTuple(Tuple t) throws DbException {
         assert t != null;
         if (td.equals(t.getTupleDesc())){
-            for (int i = 0; i < numSlots; i ++){
-                if (!isSlotUsed(i)){
-                    markSlotUsed(i, true);
-                    t.setRecordId(new RecordId(pid,i));
-                    tuples[i] = t;
-                    return;
-                }
+            int i = nextEmptySlot(0);
+            if (i >= 0){
+                copyOnWrite();
+                writeSlot(i, t);
+                markSlotUsed(i, true);
+                t.setRecordId(new RecordId(pid,i));
+                tuples[i] = t;
+                return;
             }
             throw new DbException("insertTuple: no tuple is inserted");
         }
         throw new DbException("insertTuple: no empty slots / tupledesc mismatch");
     }
 
+    /**
+     * Serializes a tuple into the given slot of the page image.
+     */
+    private void writeSlot(int slotId, Tuple t) throws DbException {
+        for (int j = 0; j < td.numFields(); j++) {
+            if (!t.isFieldSet(j)) {
+                throw new DbException("insertTuple: field " + j + " is not set");
+            }
+        }
+        for (int j = 0; j < td.numFields(); j++) {
+            t.getFieldBytes(j, data.array(), fieldOffset(slotId, j));
+        }
+    }
+
     private boolean isDirty;
     private TransactionId transactionId;
 
@@ -283,13 +460,8 @@ public class HeapPage implements Page {
      * that did the dirtying
      */
     public void markDirty(boolean dirty, TransactionId tid) {
-        if (isDirty){
-            isDirty = dirty;
-            transactionId = tid;
-        } else {
-            isDirty = false;
-            transactionId = null;
-        }
+        isDirty = dirty;
+        transactionId = dirty ? tid : null;
     }
 
     /**
@@ -303,36 +475,80 @@ public class HeapPage implements Page {
      * Returns the number of empty slots on this page.
      */
     public int getNumEmptySlots() {
-        int numEmptySlots = 0;
-        for (int i = 0; i < numSlots; i ++){
-            if (!isSlotUsed(i)){
-                numEmptySlots++;
-            }
-        }
-        return numEmptySlots;
+        return numSlots - numUsed;
+    }
+
+    public boolean hasRoomFor(Tuple t) {
+        return td.equals(t.getTupleDesc()) && getNumEmptySlots() > 0;
+    }
+
+    public boolean isEmpty() {
+        return getNumEmptySlots() == numSlots;
     }
 
     /**
      * Returns true if associated slot on this page is filled.
      */
     public boolean isSlotUsed(int i) {
-        int byteNum = i / 8;
-        int bytePos = i % 8;
-        return (byte)(header[byteNum] << (7 - bytePos)) < 0;
+        return (header[i >>> 6] & (1L << i)) != 0;
     }
 
     /**
-     * Abstraction to fill or clear a slot on this page.
+     * Returns the first used slot at or after the given slot.
+     *
+     * @return the slot number, or -1 if there is no used slot from there on.
      */
-    private void markSlotUsed(int i, boolean value) {
-        if (i < numSlots){
-            byte mask = (byte) (0x1 << (i%8));
+    public int nextUsedSlot(int from) {
+        if (from >= numSlots) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = header[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == header.length) {
+                return -1;
+            }
+            word = header[w];
+        }
+        return w * 64 + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Returns the first empty slot at or after the given slot.
+     *
+     * @return the slot number, or -1 if there is no empty slot from there on.
+     */
+    public int nextEmptySlot(int from) {
+        if (from >= numSlots) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = ~header[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == header.length) {
+                return -1;
+            }
+            word = ~header[w];
+        }
+        int i = w * 64 + Long.numberOfTrailingZeros(word);
+        return i < numSlots ? i : -1;
+    }
 
+    /**
+     * Abstraction to fill or clear a slot on this page. The change is
+     * written through to the header byte in the page image.
+     */
+    private void markSlotUsed(int i, boolean value) {
+        if (i < numSlots && value != isSlotUsed(i)){
+            long mask = 1L << i;
             if (value){
-                header[i/8] |= mask;
+                header[i >>> 6] |= mask;
+                numUsed++;
             } else {
-                header[i/8] &= ~mask;
+                header[i >>> 6] &= ~mask;
+                numUsed--;
             }
+            data.put(i >>> 3, (byte) (header[i >>> 6] >>> (8 * ((i >>> 3) % 8))));
         }
     }
 
@@ -344,17 +560,135 @@ public class HeapPage implements Page {
         return new HeapPageTupleIterator();
     }
 
-    protected class HeapPageTupleIterator implements Iterator {
-        private final Iterator<Tuple> iter;
+    /**
+     * Returns an iterator over the tuples on this page that satisfy a
+     * predicate. The predicate is evaluated on the page data, so a Tuple is
+     * only built for the tuples that match.
+     *
+     * @see #matches
+     */
+    public Iterator<Tuple> iterator(Predicate predicate) {
+        return new HeapPageTupleIterator(predicate, null, null);
+    }
+
+    /**
+     * Returns an iterator over the tuples on this page that satisfy a
+     * predicate, with only the given fields decoded.
+     *
+     * @param predicate the filter, or null to return all tuples
+     * @see #getTuple(int, int[], TupleDesc)
+     */
+    public Iterator<Tuple> iterator(Predicate predicate, int[] columns, TupleDesc projected) {
+        return new HeapPageTupleIterator(predicate, columns, projected);
+    }
+
+    /**
+     * Evaluates a predicate on the tuple in a used slot without decoding
+     * the tuple. An INT_TYPE field compared to an IntField is read straight
+     * from its offset in the page data; other fields are decoded alone.
+     */
+    public boolean matches(int slotId, Predicate predicate) {
+        int field = predicate.getField();
+        Field operand = predicate.getOperand();
+        if (field >= fieldOffsets.length) {
+            return defaultValue(field).compare(predicate.getOp(), operand);
+        }
+        int offset = fieldOffset(slotId, field);
+        if (operand instanceof IntField && td.getFieldType(field) == Type.INT_TYPE) {
+            return predicate.getOp().holds(Integer.compare(data.getInt(offset), ((IntField) operand).getValue()));
+        }
+        return td.parseField(field, data, offset).compare(predicate.getOp(), operand);
+    }
+
+    public TupleCursor cursor() {
+        return new HeapPageCursor();
+    }
+
+    /**
+     * A cursor over the used slots of this page that reads fields from the
+     * page image.
+     */
+    private class HeapPageCursor implements TupleCursor {
+        private int slot = -1;
+
+        public boolean advance() {
+            if (slot >= numSlots) {
+                return false;
+            }
+            slot = nextUsedSlot(slot + 1);
+            if (slot < 0) {
+                slot = numSlots;
+                return false;
+            }
+            return true;
+        }
+
+        public int getInt(int field) {
+            if (field >= fieldOffsets.length) {
+                return ((IntField) defaultValue(field)).getValue();
+            }
+            return data.getInt(fieldOffset(slot, field));
+        }
+
+        public long getLong(int field) {
+            if (field >= fieldOffsets.length) {
+                return defaultData(field).getLong(0);
+            }
+            return data.getLong(fieldOffset(slot, field));
+        }
+
+        public double getDouble(int field) {
+            if (field >= fieldOffsets.length) {
+                return defaultData(field).getDouble(0);
+            }
+            return data.getDouble(fieldOffset(slot, field));
+        }
+
+        public String getString(int field) {
+            if (field >= fieldOffsets.length) {
+                return ((StringField) defaultValue(field)).getValue();
+            }
+            int pos = fieldOffset(slot, field);
+            int len = Math.max(0, Math.min(data.getInt(pos), td.getStringLength(field)));
+            return new String(data.array(), pos + 4, len, StandardCharsets.ISO_8859_1);
+        }
+
+        public Field getField(int field) {
+            return HeapPage.this.getField(slot, field);
+        }
+
+        public RecordId getRecordId() {
+            return new RecordId(pid, slot);
+        }
+
+        public Tuple getTuple() {
+            return HeapPage.this.getTuple(slot);
+        }
+    }
+
+    protected class HeapPageTupleIterator implements Iterator<Tuple> {
+        private final Predicate predicate;
+        private final int[] columns;
+        private final TupleDesc projected;
+        private int next;
 
         public HeapPageTupleIterator() {
-            ArrayList<Tuple> tupleArrayList = new ArrayList<Tuple>(numSlots);
-            for (int i = 0; i < numSlots; i++) {
-                if (isSlotUsed(i)) {
-                    tupleArrayList.add(i, tuples[i]);
-                }
+            this(null, null, null);
+        }
+
+        public HeapPageTupleIterator(Predicate predicate, int[] columns, TupleDesc projected) {
+            this.predicate = predicate;
+            this.columns = columns;
+            this.projected = projected;
+            next = nextSlot(0);
+        }
+
+        private int nextSlot(int from) {
+            int slot = nextUsedSlot(from);
+            while (predicate != null && slot >= 0 && !matches(slot, predicate)) {
+                slot = nextUsedSlot(slot + 1);
             }
-            iter = tupleArrayList.iterator();
+            return slot;
         }
 
         @Override
@@ -364,12 +698,17 @@ public class HeapPage implements Page {
 
         @Override
         public boolean hasNext() {
-            return iter.hasNext();
+            return next >= 0;
         }
 
         @Override
-        public Object next() {
-            return iter.next();
+        public Tuple next() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            Tuple t = columns == null ? getTuple(next) : getTuple(next, columns, projected);
+            next = nextSlot(next + 1);
+            return t;
         }
     }
 
@@ -0,0 +1,169 @@
+package simpledb;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * KeyEncoder turns the values of a list of columns of a tuple into a
+ * normalized key: a fixed-length byte string whose unsigned lexicographic
+ * order is the order of the values, column by column. Sorting, merging and
+ * index code can then compare keys with a single
+ * {@link Arrays#compareUnsigned} instead of a Field.compare per column.
+ * <p>
+ * Each column is encoded big-endian, one after the other:
+ * <ul>
+ * <li>INT_TYPE, LONG_TYPE, DATE_TYPE and TIMESTAMP_TYPE: the value with its
+ * sign bit flipped, so negative values sort first.</li>
+ * <li>DOUBLE_TYPE: the bits of the value with the sign bit flipped, or all
+ * bits flipped for negative values, which orders as {@link Double#compare}.
+ * </li>
+ * <li>STRING_TYPE: the characters of the value, one byte each, padded with
+ * zeroes to the declared length of the column. Strings are compared as by
+ * {@link String#compareTo}, as long as they hold no NUL characters.</li>
+ * </ul>
+ * A field that is not set is encoded as zeroes.
+ */
+public class KeyEncoder {
+
+    private final TupleDesc td;
+    private final int[] columns;
+    private final int[] keyOffsets;
+    private final int keyLength;
+
+    /**
+     * Create an encoder for keys made of the given columns of tuples with
+     * the given schema, most significant column first.
+     *
+     * @param td the schema of the tuples to encode
+     * @param columns the indices of the key columns
+     * @throws IllegalArgumentException if a column index is not valid
+     */
+    public KeyEncoder(TupleDesc td, int[] columns) {
+        this.td = td;
+        this.columns = columns.clone();
+        this.keyOffsets = new int[columns.length];
+        int len = 0;
+        for (int k = 0; k < columns.length; k++) {
+            if (columns[k] < 0 || columns[k] >= td.numFields()) {
+                throw new IllegalArgumentException("invalid key column " + columns[k]);
+            }
+            keyOffsets[k] = len;
+            len += encodedLength(td.getFieldType(columns[k]), td.getStringLength(columns[k]));
+        }
+        this.keyLength = len;
+    }
+
+    /**
+     * @return the number of bytes of every key of this encoder.
+     */
+    public int getKeyLength() {
+        return keyLength;
+    }
+
+    /**
+     * @return the normalized key of the tuple, in a new array.
+     */
+    public byte[] encode(Tuple t) {
+        byte[] key = new byte[keyLength];
+        encode(t, key, 0);
+        return key;
+    }
+
+    /**
+     * Writes the normalized key of the tuple to dest, starting at offset;
+     * this lets many keys be packed into one array.
+     */
+    public void encode(Tuple t, byte[] dest, int offset) {
+        for (int k = 0; k < columns.length; k++) {
+            int i = columns[k];
+            int off = offset + keyOffsets[k];
+            Type type = td.getFieldType(i);
+            if (!t.isFieldSet(i)) {
+                Arrays.fill(dest, off, off + encodedLength(type, td.getStringLength(i)), (byte) 0);
+            } else if (type == Type.INT_TYPE) {
+                putInt(dest, off, t.getInt(i));
+            } else if (type == Type.STRING_TYPE) {
+                putString(dest, off, t.getString(i), td.getStringLength(i));
+            } else {
+                encode(t.getField(i), td.getStringLength(i), dest, off);
+            }
+        }
+    }
+
+    /**
+     * Compares two keys of this encoder stored in the given arrays.
+     *
+     * @return a negative number, zero or a positive number as the first key
+     *         is less than, equal to or greater than the second.
+     */
+    public int compare(byte[] a, int aOffset, byte[] b, int bOffset) {
+        return Arrays.compareUnsigned(a, aOffset, aOffset + keyLength, b, bOffset, bOffset + keyLength);
+    }
+
+    /**
+     * @return a comparator that orders tuples by their keys. The comparator
+     *         encodes both keys on every call; callers that compare a tuple
+     *         many times should encode it once instead.
+     */
+    public Comparator<Tuple> comparator() {
+        return (t1, t2) -> Arrays.compareUnsigned(encode(t1), encode(t2));
+    }
+
+    /**
+     * @return the number of bytes the normalized key of a single field of
+     *         the given type takes.
+     * @param stringLength the declared length of a STRING_TYPE field
+     */
+    public static int encodedLength(Type type, int stringLength) {
+        return type == Type.STRING_TYPE ? stringLength : type.getLen();
+    }
+
+    /**
+     * Writes the normalized key of a single field to dest.
+     *
+     * @param stringLength the number of bytes a StringField is padded or
+     *            truncated to
+     */
+    public static void encode(Field f, int stringLength, byte[] dest, int offset) {
+        if (f instanceof IntField) {
+            putInt(dest, offset, ((IntField) f).getValue());
+        } else if (f instanceof StringField) {
+            int n = ((StringField) f).copyBytes(dest, offset, stringLength);
+            Arrays.fill(dest, offset + n, offset + stringLength, (byte) 0);
+        } else if (f instanceof LongField) {
+            putLong(dest, offset, ((LongField) f).getValue());
+        } else if (f instanceof DateField) {
+            putLong(dest, offset, ((DateField) f).getValue());
+        } else if (f instanceof TimestampField) {
+            putLong(dest, offset, ((TimestampField) f).getValue());
+        } else if (f instanceof DoubleField) {
+            long bits = Double.doubleToLongBits(((DoubleField) f).getValue());
+            // putLong flips the sign bit; negative values need all of their
+            // bits flipped
+            putLong(dest, offset, bits < 0 ? ~bits ^ Long.MIN_VALUE : bits);
+        } else {
+            throw new IllegalArgumentException("cannot encode a key of type " + f.getType());
+        }
+    }
+
+    private static void putInt(byte[] dest, int off, int value) {
+        value ^= Integer.MIN_VALUE;
+        dest[off] = (byte) (value >>> 24);
+        dest[off + 1] = (byte) (value >>> 16);
+        dest[off + 2] = (byte) (value >>> 8);
+        dest[off + 3] = (byte) value;
+    }
+
+    private static void putLong(byte[] dest, int off, long value) {
+        value ^= Long.MIN_VALUE;
+        for (int b = 0; b < 8; b++) {
+            dest[off + b] = (byte) (value >>> (56 - 8 * b));
+        }
+    }
+
+    private static void putString(byte[] dest, int off, String value, int len) {
+        int n = Math.min(value.length(), len);
+        StringField.encode(value, n, dest, off);
+        Arrays.fill(dest, off + n, off + len, (byte) 0);
+    }
+}
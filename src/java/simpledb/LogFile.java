@@ -2,6 +2,7 @@
 package simpledb;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.lang.reflect.*;
 
@@ -236,16 +237,27 @@ public class LogFile {
         raf.writeUTF(pageClassName);
         raf.writeUTF(idClassName);
 
-        raf.writeInt(pageInfo.length);
+        // the id and the page are encoded into one buffer, so they take a
+        // single write rather than one per int; the ints go through the
+        // same codec as INT_TYPE fields
+        byte[] pageData = p.getPageData();
+        ByteBuffer buf = ByteBuffer.allocate(INT_SIZE * (pageInfo.length + 2) + pageData.length);
+        new IntField(pageInfo.length).serialize(buf, 0);
         for (int i = 0; i < pageInfo.length; i++) {
-            raf.writeInt(pageInfo[i]);
+            new IntField(pageInfo[i]).serialize(buf, INT_SIZE * (i + 1));
         }
-        byte[] pageData = p.getPageData();
-        raf.writeInt(pageData.length);
-        raf.write(pageData);
+        new IntField(pageData.length).serialize(buf, INT_SIZE * (pageInfo.length + 1));
+        buf.position(INT_SIZE * (pageInfo.length + 2));
+        buf.put(pageData);
+        raf.write(buf.array());
         //        Debug.log ("WROTE PAGE DATA, CLASS = " + pageClassName + ", table = " +  pid.getTableId() + ", page = " + pid.pageno());
     }
 
+    /** Decodes an int written by writePageData, using the INT_TYPE codec. */
+    private static int readInt(ByteBuffer buf, int offset) {
+        return ((IntField) Type.INT_TYPE.parse(buf, offset)).getValue();
+    }
+
     Page readPageData(RandomAccessFile raf) throws IOException {
         PageId pid;
         Page newPage = null;
@@ -257,25 +269,31 @@ public class LogFile {
             Class<?> idClass = Class.forName(idClassName);
             Class<?> pageClass = Class.forName(pageClassName);
 
-            Constructor<?>[] idConsts = idClass.getDeclaredConstructors();
             int numIdArgs = raf.readInt();
+            // the id args and the page size are read with one call
+            byte[] idData = new byte[INT_SIZE * (numIdArgs + 1)];
+            raf.readFully(idData);
+            ByteBuffer idBuf = ByteBuffer.wrap(idData);
             Object idArgs[] = new Object[numIdArgs];
             for (int i = 0; i<numIdArgs;i++) {
-                idArgs[i] = new Integer(raf.readInt());
+                idArgs[i] = Integer.valueOf(readInt(idBuf, INT_SIZE * i));
             }
-            pid = (PageId)idConsts[0].newInstance(idArgs);
+            // look the constructors up by signature: a class may declare
+            // more than one, in no particular order
+            Class<?>[] idTypes = new Class<?>[numIdArgs];
+            Arrays.fill(idTypes, int.class);
+            pid = (PageId)idClass.getDeclaredConstructor(idTypes).newInstance(idArgs);
 
-            Constructor<?>[] pageConsts = pageClass.getDeclaredConstructors();
-            int pageSize = raf.readInt();
+            int pageSize = readInt(idBuf, INT_SIZE * numIdArgs);
 
             byte[] pageData = new byte[pageSize];
-            raf.read(pageData); //read before image
+            raf.readFully(pageData); //read before image
 
             Object[] pageArgs = new Object[2];
             pageArgs[0] = pid;
             pageArgs[1] = pageData;
 
-            newPage = (Page)pageConsts[0].newInstance(pageArgs);
+            newPage = (Page)pageClass.getDeclaredConstructor(HeapPageId.class, byte[].class).newInstance(pageArgs);
 
             //            Debug.log("READ PAGE OF TYPE " + pageClassName + ", table = " + newPage.getId().getTableId() + ", page = " + newPage.getId().pageno());
         } catch (ClassNotFoundException e){
@@ -290,6 +308,9 @@ public class LogFile {
         } catch (InvocationTargetException e) {
             e.printStackTrace();
             throw new IOException();
+        } catch (NoSuchMethodException e) {
+            e.printStackTrace();
+            throw new IOException();
         }
         return newPage;
 
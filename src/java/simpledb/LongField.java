@@ -0,0 +1,66 @@
+package simpledb;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Instance of Field that stores a single 64-bit integer.
+ */
+public class LongField implements Field {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long value;
+
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param l The value of this field.
+     */
+    public LongField(long l) {
+        value = l;
+    }
+
+    public String toString() {
+        return Long.toString(value);
+    }
+
+    public int hashCode() {
+        return Long.hashCode(value);
+    }
+
+    public boolean equals(Object field) {
+        return field instanceof LongField && ((LongField) field).value == value;
+    }
+
+    public void serialize(DataOutputStream dos) throws IOException {
+        dos.writeLong(value);
+    }
+
+    public void serialize(ByteBuffer buf, int offset) {
+        buf.putLong(offset, value);
+    }
+
+    /**
+     * Compare the specified field to the value of this Field.
+     * Return semantics are as specified by Field.compare
+     *
+     * @throws IllegalCastException if val is not a LongField
+     * @see Field#compare
+     */
+    public boolean compare(Predicate.Op op, Field val) {
+        return op.holds(Long.compare(value, ((LongField) val).value));
+    }
+
+    /**
+     * Return the Type of this field.
+     * @return Type.LONG_TYPE
+     */
+	public Type getType() {
+		return Type.LONG_TYPE;
+	}
+}
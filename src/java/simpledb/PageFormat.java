@@ -0,0 +1,68 @@
+package simpledb;
+
+import java.io.IOException;
+
+/**
+ * The on-disk layouts a HeapFile can store its pages in.
+ */
+public enum PageFormat {
+
+    /** Fixed-size slots with a used-slot bitmap; see {@link HeapPage}. */
+    HEAP {
+        public TuplePage newPage(HeapPageId id, byte[] data) throws IOException {
+            return new HeapPage(id, data);
+        }
+
+        TuplePage newPage(HeapPageId id, byte[] data, int schemaVersion) throws IOException {
+            return new HeapPage(id, data, schemaVersion);
+        }
+    },
+
+    /**
+     * A slot directory over variable-length records; see
+     * {@link SlottedHeapPage}.
+     */
+    SLOTTED {
+        public TuplePage newPage(HeapPageId id, byte[] data) throws IOException {
+            return new SlottedHeapPage(id, data);
+        }
+    },
+
+    /** Fixed-size slots grouped by column; see {@link PaxPage}. */
+    PAX {
+        public TuplePage newPage(HeapPageId id, byte[] data) throws IOException {
+            return new PaxPage(id, data);
+        }
+
+        TuplePage newPage(HeapPageId id, byte[] data, int schemaVersion) throws IOException {
+            return new PaxPage(id, data, schemaVersion);
+        }
+    };
+
+    /**
+     * Creates a page of this format from its on-disk bytes.
+     *
+     * @param id the id of the page
+     * @param data the page data, e.g. from {@link HeapPage#createEmptyPageData}
+     */
+    public abstract TuplePage newPage(HeapPageId id, byte[] data) throws IOException;
+
+    /**
+     * Creates a page of this format from bytes written with an older schema
+     * version of its table.
+     *
+     * @throws IOException if the format does not support schema versions
+     * @see Catalog#addColumn
+     */
+    TuplePage newPage(HeapPageId id, byte[] data, int schemaVersion) throws IOException {
+        throw new IOException(this + " pages do not support schema versions");
+    }
+
+    /**
+     * @return true if pages of this format can be read with an older schema
+     *         version of their table.
+     */
+    boolean supportsSchemaVersions() {
+        return this != SLOTTED;
+    }
+}
@@ -0,0 +1,307 @@
+package simpledb;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ParallelSeqScan is a sequential scan of a HeapFile that reads the file on
+ * several threads. The pages of the file are split into morsels of a fixed
+ * number of consecutive pages; worker tasks running in a ForkJoinPool each
+ * claim the next unscanned morsel, scan it, and hand its tuples to the
+ * thread calling next(), until all morsels are scanned.
+ * <p>
+ * In ordered mode the tuples are returned in the order a SeqScan returns
+ * them. In unordered mode each morsel's tuples are returned as soon as the
+ * morsel is scanned, which avoids waiting on a slow morsel. Either way,
+ * workers only run a bounded number of morsels ahead of the consumer.
+ * <p>
+ * The predicate and columns are pushed down to the pages as in
+ * {@link SeqScan}.
+ */
+public class ParallelSeqScan implements DbIterator {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The number of pages in a morsel unless asked otherwise. */
+    public static final int DEFAULT_MORSEL_PAGES = 16;
+
+    private final TransactionId tid;
+    private final int tableid;
+    private final String tableAlias;
+    private final Predicate predicate;
+    private final int[] columns;
+    private final boolean ordered;
+    private final int morselPages;
+    private final transient ForkJoinPool pool;
+
+    // the state of an open scan
+    private transient Run run;
+    private transient Iterator<Tuple> current;
+
+    /**
+     * Creates a parallel scan of all the tuples of a table, in the order of
+     * a SeqScan, on the common ForkJoinPool.
+     *
+     * @see SeqScan#SeqScan(TransactionId, int, String)
+     */
+    public ParallelSeqScan(TransactionId tid, int tableid, String tableAlias) {
+        this(tid, tableid, tableAlias, null, null, true, DEFAULT_MORSEL_PAGES, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a parallel scan on the common ForkJoinPool.
+     *
+     * @param predicate
+     *            the filter to apply, with field numbers of the table; null
+     *            to return all tuples.
+     * @param columns
+     *            the indexes of the fields of the table to return, in order;
+     *            null to return all of them.
+     * @param ordered
+     *            true to return the tuples in file order, false to return
+     *            them in the order they are scanned.
+     */
+    public ParallelSeqScan(TransactionId tid, int tableid, String tableAlias,
+            Predicate predicate, int[] columns, boolean ordered) {
+        this(tid, tableid, tableAlias, predicate, columns, ordered, DEFAULT_MORSEL_PAGES,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a parallel scan with the given morsel size, on the given pool.
+     * At most as many morsels as the pool's parallelism are scanned at once.
+     *
+     * @param morselPages
+     *            the number of pages of a morsel
+     * @param pool
+     *            the pool the workers run in
+     * @throws IllegalArgumentException
+     *             if the table is not stored in a HeapFile or morselPages is
+     *             not positive
+     */
+    public ParallelSeqScan(TransactionId tid, int tableid, String tableAlias,
+            Predicate predicate, int[] columns, boolean ordered, int morselPages, ForkJoinPool pool) {
+        if (!(Database.getCatalog().getDatabaseFile(tableid) instanceof HeapFile)) {
+            throw new IllegalArgumentException("a parallel scan needs a table stored in a HeapFile");
+        }
+        if (morselPages <= 0) {
+            throw new IllegalArgumentException("morsels must have at least one page: " + morselPages);
+        }
+        this.tid = tid;
+        this.tableid = tableid;
+        this.tableAlias = tableAlias;
+        this.predicate = predicate;
+        this.columns = columns == null ? null : columns.clone();
+        this.ordered = ordered;
+        this.morselPages = morselPages;
+        this.pool = pool;
+    }
+
+    /**
+     * @return the alias of the table this operator scans.
+     */
+    public String getAlias() {
+        return tableAlias;
+    }
+
+    public void open() throws DbException, TransactionAbortedException {
+        if (run != null) {
+            run.cancel();
+        }
+        HeapFile file = (HeapFile) Database.getCatalog().getDatabaseFile(tableid);
+        run = new Run(file);
+        current = Collections.<Tuple>emptyList().iterator();
+        run.start();
+    }
+
+    /**
+     * @see SeqScan#getTupleDesc
+     */
+    public TupleDesc getTupleDesc() {
+        return SeqScan.aliasedTupleDesc(tableid, tableAlias, columns);
+    }
+
+    public boolean hasNext() throws DbException, TransactionAbortedException {
+        if (run == null) {
+            throw new IllegalStateException("Operator not yet open");
+        }
+        while (!current.hasNext()) {
+            List<Tuple> morsel = run.take();
+            if (morsel == null) {
+                return false;
+            }
+            current = morsel.iterator();
+        }
+        return true;
+    }
+
+    public Tuple next() throws DbException, TransactionAbortedException, NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    public void rewind() throws DbException, TransactionAbortedException {
+        close();
+        open();
+    }
+
+    public void close() {
+        if (run != null) {
+            run.cancel();
+        }
+        run = null;
+        current = null;
+    }
+
+    /**
+     * The morsels of one pass over the file and the workers scanning them.
+     */
+    private class Run {
+        private final HeapFile file;
+        private final int numMorsels;
+        private final AtomicInteger nextMorsel = new AtomicInteger();
+        // permits for morsels that may be scanned but not yet consumed
+        private final Semaphore window;
+        private final int parallelism;
+        // ordered mode: the tuples of morsel m, by m
+        private final List<CompletableFuture<List<Tuple>>> results;
+        // unordered mode: tuples of morsels in the order they are scanned
+        private final BlockingQueue<CompletableFuture<List<Tuple>>> done;
+        private volatile boolean cancelled;
+        private int consumed;
+
+        public Run(HeapFile file) {
+            this.file = file;
+            int pages = file.numPages();
+            this.numMorsels = (pages + morselPages - 1) / morselPages;
+            this.parallelism = Math.max(1, Math.min(pool.getParallelism(), numMorsels));
+            this.window = new Semaphore(2 * parallelism);
+            if (ordered) {
+                results = new ArrayList<CompletableFuture<List<Tuple>>>(numMorsels);
+                for (int m = 0; m < numMorsels; m++) {
+                    results.add(new CompletableFuture<List<Tuple>>());
+                }
+                done = null;
+            } else {
+                results = null;
+                done = new LinkedBlockingQueue<CompletableFuture<List<Tuple>>>();
+            }
+        }
+
+        public void start() {
+            for (int w = 0; w < parallelism && w < numMorsels; w++) {
+                pool.execute(this::work);
+            }
+        }
+
+        /**
+         * Scans morsels until there are none left or the scan is closed.
+         */
+        private void work() {
+            while (!cancelled) {
+                try {
+                    ForkJoinPool.managedBlock(new PermitBlocker(window));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                int m = nextMorsel.getAndIncrement();
+                if (m >= numMorsels || cancelled) {
+                    window.release();
+                    return;
+                }
+                CompletableFuture<List<Tuple>> result = ordered ? results.get(m)
+                        : new CompletableFuture<List<Tuple>>();
+                try {
+                    result.complete(scan(m));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+                if (!ordered) {
+                    done.add(result);
+                }
+            }
+        }
+
+        private List<Tuple> scan(int m) throws DbException, TransactionAbortedException {
+            int from = m * morselPages;
+            int to = Math.min(from + morselPages, file.numPages());
+            DbFileIterator it = file.iterator(tid, from, to, predicate, columns);
+            List<Tuple> tuples = new ArrayList<Tuple>();
+            it.open();
+            try {
+                while (it.hasNext() && !cancelled) {
+                    tuples.add(it.next());
+                }
+            } finally {
+                it.close();
+            }
+            return tuples;
+        }
+
+        /**
+         * @return the tuples of the next morsel, or null if all morsels were
+         *         returned.
+         */
+        public List<Tuple> take() throws DbException, TransactionAbortedException {
+            if (consumed == numMorsels) {
+                return null;
+            }
+            try {
+                CompletableFuture<List<Tuple>> result = ordered ? results.get(consumed) : done.take();
+                consumed++;
+                List<Tuple> tuples = result.get();
+                window.release();
+                return tuples;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DbException("interrupted while waiting for a parallel scan");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof DbException) {
+                    throw (DbException) cause;
+                }
+                if (cause instanceof TransactionAbortedException) {
+                    throw (TransactionAbortedException) cause;
+                }
+                throw new DbException("parallel scan failed: " + cause);
+            }
+        }
+
+        /**
+         * Stops the workers after the morsels they are scanning.
+         */
+        public void cancel() {
+            cancelled = true;
+            // wake up workers waiting for room to scan another morsel
+            window.release(parallelism);
+        }
+    }
+
+    /**
+     * Acquires a permit, letting the pool add a thread while it waits.
+     */
+    private static class PermitBlocker implements ForkJoinPool.ManagedBlocker {
+        private final Semaphore semaphore;
+        private boolean acquired;
+
+        public PermitBlocker(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        public boolean block() throws InterruptedException {
+            if (!acquired) {
+                semaphore.acquire();
+                acquired = true;
+            }
+            return true;
+        }
+
+        public boolean isReleasable() {
+            return acquired || (acquired = semaphore.tryAcquire());
+        }
+    }
+}
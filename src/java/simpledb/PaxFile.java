@@ -0,0 +1,30 @@
+package simpledb;
+
+import java.io.File;
+
+/**
+ * PaxFile is a HeapFile whose pages use the column-grouped PAX layout of
+ * {@link PaxPage}. It supports everything a HeapFile does, including
+ * scans with {@link SeqScan}.
+ */
+public class PaxFile extends HeapFile {
+
+    /**
+     * Constructs a PAX file backed by the specified file.
+     *
+     * @param f
+     *            the file that stores the on-disk backing store for this file.
+     */
+    public PaxFile(File f, TupleDesc td) {
+        super(f, td, PageFormat.PAX);
+    }
+
+    /**
+     * Constructs a PAX file with the given extent size and I/O mode.
+     *
+     * @see HeapFile#HeapFile(File, TupleDesc, int, boolean)
+     */
+    public PaxFile(File f, TupleDesc td, int extentSize, boolean directIo) {
+        super(f, td, PageFormat.PAX, extentSize, directIo);
+    }
+}
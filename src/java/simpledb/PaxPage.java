@@ -0,0 +1,66 @@
+package simpledb;
+
+import java.io.IOException;
+
+/**
+ * PaxPage is a HeapPage that groups the values of each column together
+ * (Partition Attributes Across). It has the same header and the same number
+ * of slots as a HeapPage, but the rest of the page is split into one
+ * minipage per column, holding that column's value for every slot in slot
+ * order:
+ * <p>
+ *      header | column 0 of slots 0..n-1 | column 1 of slots 0..n-1 | ...
+ * <p>
+ * A scan that reads a single column through {@link #cursor} thus touches
+ * only that column's minipage rather than every byte of every row.
+ *
+ * @see PaxFile
+ * @see PageFormat#PAX
+ */
+public class PaxPage extends HeapPage {
+
+    // offset of each column's minipage in the page data
+    private final int[] columnStarts;
+
+    /**
+     * Create a PaxPage from a set of bytes of data read from disk.
+     *
+     * @see HeapPage#HeapPage
+     */
+    public PaxPage(HeapPageId id, byte[] data) throws IOException {
+        this(id, data, Database.getCatalog().getSchemaVersion(id.getTableId()));
+    }
+
+    /**
+     * Create a PaxPage from data written with the given schema version of
+     * its table.
+     *
+     * @see HeapPage#HeapPage(HeapPageId, byte[], int)
+     */
+    PaxPage(HeapPageId id, byte[] data, int schemaVersion) throws IOException {
+        super(id, data, schemaVersion);
+        columnStarts = new int[fieldOffsets.length];
+        for (int j = 0; j < columnStarts.length; j++) {
+            columnStarts[j] = headerSize + numSlots * fieldOffsets[j];
+        }
+    }
+
+    @Override
+    int fieldOffset(int slotId, int field) {
+        return columnStarts[field] + slotId * td.getFieldLength(field);
+    }
+
+    /** Return a view of this page before it was modified
+     -- used by recovery */
+    @Override
+    public PaxPage getBeforeImage() {
+        try {
+            return new PaxPage(pid, beforeImageData(), getSchemaVersion());
+        } catch (IOException e) {
+            e.printStackTrace();
+            //should never happen -- we parsed it OK before!
+            System.exit(1);
+        }
+        return null;
+    }
+}
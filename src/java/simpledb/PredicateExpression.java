@@ -0,0 +1,598 @@
+package simpledb;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * PredicateExpression is a boolean expression over the fields of a tuple:
+ * comparisons of a field with a constant or with another field, combined
+ * with AND, OR and NOT.
+ * <p>
+ * An expression is compiled once per query, against the schema of the
+ * tuples it filters, into a {@link Compiled} tree. Compilation picks the
+ * type of each comparison and its operator ahead of time: an INT_TYPE field
+ * compared to a constant with LESS_THAN becomes a test such as
+ * <code>v -&gt; v &lt; c</code> on the field's int value, read from a Tuple,
+ * a {@link TupleCursor} or a column of a {@link TupleBatch}, with no switch
+ * on the operator, cast or Field object per row. Comparisons that have no
+ * specialized form, such as LIKE on strings, fall back to
+ * {@link Field#compare}.
+ * <p>
+ * LIKE only matches substrings of STRING_TYPE fields. On any other type it
+ * means EQUALS, as it does in {@link Field#compare}, and it is compiled as
+ * an equality test.
+ *
+ * @see Predicate
+ */
+public abstract class PredicateExpression implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The compiled form of an expression.
+     */
+    public interface Compiled {
+
+        /**
+         * @return true if the tuple satisfies the expression.
+         */
+        boolean test(Tuple t);
+
+        /**
+         * @return true if the tuple the cursor is on satisfies the
+         *         expression. On a page cursor, INT_TYPE fields are compared
+         *         in place.
+         */
+        boolean test(TupleCursor cursor);
+
+        /**
+         * @return true if a row of the batch satisfies the expression.
+         */
+        boolean test(TupleBatch batch, int row);
+
+        /**
+         * Narrows the selection of a batch to the selected rows that satisfy
+         * the expression.
+         *
+         * @return the number of rows still selected
+         */
+        default int filter(TupleBatch batch) {
+            int[] sel = batch.getSelection();
+            int n = batch.numSelected();
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                if (test(batch, sel[i])) {
+                    sel[kept++] = sel[i];
+                }
+            }
+            batch.setNumSelected(kept);
+            return kept;
+        }
+    }
+
+    /**
+     * Compiles this expression for tuples with the given schema.
+     *
+     * @throws IllegalArgumentException
+     *             if a field does not exist or a comparison is between
+     *             values of different types
+     */
+    public abstract Compiled compile(TupleDesc td);
+
+    /**
+     * @return the expression "field op operand".
+     */
+    public static PredicateExpression compare(int field, Predicate.Op op, Field operand) {
+        return new Constant(field, op, operand);
+    }
+
+    /**
+     * @return the expression "left op right", comparing two fields of the
+     *         same type.
+     */
+    public static PredicateExpression compareFields(int left, Predicate.Op op, int right) {
+        return new Fields(left, op, right);
+    }
+
+    /**
+     * @return the expression that holds when the predicate does.
+     */
+    public static PredicateExpression of(Predicate p) {
+        return compare(p.getField(), p.getOp(), p.getOperand());
+    }
+
+    /**
+     * @return the conjunction of the given expressions, which are evaluated
+     *         in order until one is false.
+     */
+    public static PredicateExpression and(PredicateExpression... terms) {
+        return new Junction(true, terms.clone());
+    }
+
+    /**
+     * @return the disjunction of the given expressions, which are evaluated
+     *         in order until one is true.
+     */
+    public static PredicateExpression or(PredicateExpression... terms) {
+        return new Junction(false, terms.clone());
+    }
+
+    /**
+     * @return the negation of the given expression.
+     */
+    public static PredicateExpression not(PredicateExpression term) {
+        return new Not(term);
+    }
+
+    // Conditions on a single value, specialized per operator at compile time
+
+    private interface IntCondition {
+        boolean test(int v);
+    }
+
+    private interface LongCondition {
+        boolean test(long v);
+    }
+
+    private interface DoubleCondition {
+        boolean test(double v);
+    }
+
+    private interface IntPairCondition {
+        boolean test(int a, int b);
+    }
+
+    private static IntCondition intCondition(Predicate.Op op, int c) {
+        switch (op) {
+        case EQUALS:
+        case LIKE:
+            return v -> v == c;
+        case NOT_EQUALS:
+            return v -> v != c;
+        case GREATER_THAN:
+            return v -> v > c;
+        case GREATER_THAN_OR_EQ:
+            return v -> v >= c;
+        case LESS_THAN:
+            return v -> v < c;
+        default:
+            return v -> v <= c;
+        }
+    }
+
+    private static LongCondition longCondition(Predicate.Op op, long c) {
+        switch (op) {
+        case EQUALS:
+        case LIKE:
+            return v -> v == c;
+        case NOT_EQUALS:
+            return v -> v != c;
+        case GREATER_THAN:
+            return v -> v > c;
+        case GREATER_THAN_OR_EQ:
+            return v -> v >= c;
+        case LESS_THAN:
+            return v -> v < c;
+        default:
+            return v -> v <= c;
+        }
+    }
+
+    // doubles are ordered as by Double.compare, as DoubleField.compare does
+    private static DoubleCondition doubleCondition(Predicate.Op op, double c) {
+        switch (op) {
+        case EQUALS:
+        case LIKE:
+            return v -> Double.compare(v, c) == 0;
+        case NOT_EQUALS:
+            return v -> Double.compare(v, c) != 0;
+        case GREATER_THAN:
+            return v -> Double.compare(v, c) > 0;
+        case GREATER_THAN_OR_EQ:
+            return v -> Double.compare(v, c) >= 0;
+        case LESS_THAN:
+            return v -> Double.compare(v, c) < 0;
+        default:
+            return v -> Double.compare(v, c) <= 0;
+        }
+    }
+
+    private static IntPairCondition intPairCondition(Predicate.Op op) {
+        switch (op) {
+        case EQUALS:
+        case LIKE:
+            return (a, b) -> a == b;
+        case NOT_EQUALS:
+            return (a, b) -> a != b;
+        case GREATER_THAN:
+            return (a, b) -> a > b;
+        case GREATER_THAN_OR_EQ:
+            return (a, b) -> a >= b;
+        case LESS_THAN:
+            return (a, b) -> a < b;
+        default:
+            return (a, b) -> a <= b;
+        }
+    }
+
+    private static long longValue(Field f) {
+        if (f instanceof LongField) {
+            return ((LongField) f).getValue();
+        } else if (f instanceof DateField) {
+            return ((DateField) f).getValue();
+        }
+        return ((TimestampField) f).getValue();
+    }
+
+    private static void checkField(TupleDesc td, int field) {
+        if (field < 0 || field >= td.numFields()) {
+            throw new IllegalArgumentException("invalid field " + field);
+        }
+    }
+
+    /**
+     * A field compared to a constant.
+     */
+    private static class Constant extends PredicateExpression {
+        private static final long serialVersionUID = 1L;
+
+        private final int field;
+        private final Predicate.Op op;
+        private final Field operand;
+
+        public Constant(int field, Predicate.Op op, Field operand) {
+            this.field = field;
+            this.op = op;
+            this.operand = operand;
+        }
+
+        public Compiled compile(TupleDesc td) {
+            checkField(td, field);
+            Type type = td.getFieldType(field);
+            if (type != operand.getType()) {
+                throw new IllegalArgumentException("cannot compare field " + field + " of type "
+                        + type + " to " + operand.getType());
+            }
+            if (type == Type.INT_TYPE) {
+                return new IntConstant(field, intCondition(op, ((IntField) operand).getValue()));
+            } else if (type == Type.DOUBLE_TYPE) {
+                return new DoubleConstant(field, doubleCondition(op, ((DoubleField) operand).getValue()));
+            } else if (type != Type.STRING_TYPE) {
+                return new LongConstant(field, longCondition(op, longValue(operand)));
+            }
+            return new FieldConstant(field, op, operand);
+        }
+
+        public String toString() {
+            return "f" + field + " " + op + " " + operand;
+        }
+    }
+
+    /**
+     * Two fields compared to each other.
+     */
+    private static class Fields extends PredicateExpression {
+        private static final long serialVersionUID = 1L;
+
+        private final int left;
+        private final Predicate.Op op;
+        private final int right;
+
+        public Fields(int left, Predicate.Op op, int right) {
+            this.left = left;
+            this.op = op;
+            this.right = right;
+        }
+
+        public Compiled compile(TupleDesc td) {
+            checkField(td, left);
+            checkField(td, right);
+            Type type = td.getFieldType(left);
+            if (type != td.getFieldType(right)) {
+                throw new IllegalArgumentException("cannot compare field " + left + " of type "
+                        + type + " to field " + right + " of type " + td.getFieldType(right));
+            }
+            if (type == Type.INT_TYPE) {
+                return new IntFields(left, right, intPairCondition(op));
+            }
+            return new FieldFields(left, op, right);
+        }
+
+        public String toString() {
+            return "f" + left + " " + op + " f" + right;
+        }
+    }
+
+    private static class Junction extends PredicateExpression {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean and;
+        private final PredicateExpression[] terms;
+
+        public Junction(boolean and, PredicateExpression[] terms) {
+            this.and = and;
+            this.terms = terms;
+        }
+
+        public Compiled compile(TupleDesc td) {
+            Compiled[] compiled = new Compiled[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                compiled[i] = terms[i].compile(td);
+            }
+            if (compiled.length == 1) {
+                return compiled[0];
+            }
+            return and ? new And(compiled) : new Or(compiled);
+        }
+
+        public String toString() {
+            return "(" + String.join(and ? " AND " : " OR ",
+                    Arrays.stream(terms).map(String::valueOf).toArray(String[]::new)) + ")";
+        }
+    }
+
+    private static class Not extends PredicateExpression {
+        private static final long serialVersionUID = 1L;
+
+        private final PredicateExpression term;
+
+        public Not(PredicateExpression term) {
+            this.term = term;
+        }
+
+        public Compiled compile(TupleDesc td) {
+            Compiled c = term.compile(td);
+            return new Compiled() {
+                public boolean test(Tuple t) {
+                    return !c.test(t);
+                }
+
+                public boolean test(TupleCursor cursor) {
+                    return !c.test(cursor);
+                }
+
+                public boolean test(TupleBatch batch, int row) {
+                    return !c.test(batch, row);
+                }
+            };
+        }
+
+        public String toString() {
+            return "NOT " + term;
+        }
+    }
+
+    // Compiled forms
+
+    private static class IntConstant implements Compiled {
+        private final int field;
+        private final IntCondition cond;
+
+        public IntConstant(int field, IntCondition cond) {
+            this.field = field;
+            this.cond = cond;
+        }
+
+        public boolean test(Tuple t) {
+            return cond.test(t.getInt(field));
+        }
+
+        public boolean test(TupleCursor cursor) {
+            return cond.test(cursor.getInt(field));
+        }
+
+        public boolean test(TupleBatch batch, int row) {
+            return cond.test(batch.getInt(field, row));
+        }
+
+        public int filter(TupleBatch batch) {
+            int[] column = batch.getIntColumn(field);
+            int[] sel = batch.getSelection();
+            int n = batch.numSelected();
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                int row = sel[i];
+                if (cond.test(column[row])) {
+                    sel[kept++] = row;
+                }
+            }
+            batch.setNumSelected(kept);
+            return kept;
+        }
+    }
+
+    private static class LongConstant implements Compiled {
+        private final int field;
+        private final LongCondition cond;
+
+        public LongConstant(int field, LongCondition cond) {
+            this.field = field;
+            this.cond = cond;
+        }
+
+        public boolean test(Tuple t) {
+            return cond.test(t.getLong(field));
+        }
+
+        public boolean test(TupleCursor cursor) {
+            return cond.test(cursor.getLong(field));
+        }
+
+        public boolean test(TupleBatch batch, int row) {
+            return cond.test(batch.getLong(field, row));
+        }
+    }
+
+    private static class DoubleConstant implements Compiled {
+        private final int field;
+        private final DoubleCondition cond;
+
+        public DoubleConstant(int field, DoubleCondition cond) {
+            this.field = field;
+            this.cond = cond;
+        }
+
+        public boolean test(Tuple t) {
+            return cond.test(t.getDouble(field));
+        }
+
+        public boolean test(TupleCursor cursor) {
+            return cond.test(cursor.getDouble(field));
+        }
+
+        public boolean test(TupleBatch batch, int row) {
+            return cond.test(batch.getDouble(field, row));
+        }
+    }
+
+    private static class FieldConstant implements Compiled {
+        private final int field;
+        private final Predicate.Op op;
+        private final Field operand;
+
+        public FieldConstant(int field, Predicate.Op op, Field operand) {
+            this.field = field;
+            this.op = op;
+            this.operand = operand;
+        }
+
+        public boolean test(Tuple t) {
+            return t.getField(field).compare(op, operand);
+        }
+
+        public boolean test(TupleCursor cursor) {
+            return cursor.getField(field).compare(op, operand);
+        }
+
+        public boolean test(TupleBatch batch, int row) {
+            return batch.getField(field, row).compare(op, operand);
+        }
+    }
+
+    private static class IntFields implements Compiled {
+        private final int left;
+        private final int right;
+        private final IntPairCondition cond;
+
+        public IntFields(int left, int right, IntPairCondition cond) {
+            this.left = left;
+            this.right = right;
+            this.cond = cond;
+        }
+
+        public boolean test(Tuple t) {
+            return cond.test(t.getInt(left), t.getInt(right));
+        }
+
+        public boolean test(TupleCursor cursor) {
+            return cond.test(cursor.getInt(left), cursor.getInt(right));
+        }
+
+        public boolean test(TupleBatch batch, int row) {
+            return cond.test(batch.getInt(left, row), batch.getInt(right, row));
+        }
+    }
+
+    private static class FieldFields implements Compiled {
+        private final int left;
+        private final Predicate.Op op;
+        private final int right;
+
+        public FieldFields(int left, Predicate.Op op, int right) {
+            this.left = left;
+            this.op = op;
+            this.right = right;
+        }
+
+        public boolean test(Tuple t) {
+            return t.getField(left).compare(op, t.getField(right));
+        }
+
+        public boolean test(TupleCursor cursor) {
+            return cursor.getField(left).compare(op, cursor.getField(right));
+        }
+
+        public boolean test(TupleBatch batch, int row) {
+            return batch.getField(left, row).compare(op, batch.getField(right, row));
+        }
+    }
+
+    private static class And implements Compiled {
+        private final Compiled[] terms;
+
+        public And(Compiled[] terms) {
+            this.terms = terms;
+        }
+
+        public boolean test(Tuple t) {
+            for (Compiled c : terms) {
+                if (!c.test(t)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public boolean test(TupleCursor cursor) {
+            for (Compiled c : terms) {
+                if (!c.test(cursor)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public boolean test(TupleBatch batch, int row) {
+            for (Compiled c : terms) {
+                if (!c.test(batch, row)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // each term only looks at the rows the terms before it kept
+        public int filter(TupleBatch batch) {
+            int kept = batch.numSelected();
+            for (int i = 0; i < terms.length && kept > 0; i++) {
+                kept = terms[i].filter(batch);
+            }
+            return kept;
+        }
+    }
+
+    private static class Or implements Compiled {
+        private final Compiled[] terms;
+
+        public Or(Compiled[] terms) {
+            this.terms = terms;
+        }
+
+        public boolean test(Tuple t) {
+            for (Compiled c : terms) {
+                if (c.test(t)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean test(TupleCursor cursor) {
+            for (Compiled c : terms) {
+                if (c.test(cursor)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean test(TupleBatch batch, int row) {
+            for (Compiled c : terms) {
+                if (c.test(batch, row)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
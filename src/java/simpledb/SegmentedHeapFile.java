@@ -0,0 +1,286 @@
+package simpledb;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SegmentedHeapFile is a HeapFile whose pages are spread over a directory of
+ * fixed-size segment files instead of a single file. Page N lives in segment
+ * N / pagesPerSegment, at page N % pagesPerSegment of that segment, and each
+ * segment has its own channel. Segments can be placed on different devices
+ * (e.g. through symbolic links), scanned independently with
+ * {@link #segmentIterator}, and dropped as a unit with {@link #dropSegment}.
+ * <p>
+ * Page numbers are global and never shift: the pages of a dropped segment
+ * read as empty pages until a new tuple is stored on them. Page reads and
+ * writes exclude dropping the segment they go to, so a page is never read
+ * from or written to a segment file as it is deleted.
+ *
+ * @see HeapFile
+ */
+public class SegmentedHeapFile extends HeapFile {
+
+    /** Default number of pages per segment file (128 MB with 4 KB pages). */
+    public static final int DEFAULT_PAGES_PER_SEGMENT = 32 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final File dir;
+    private final int pagesPerSegment;
+    private final int extentSize;
+    private final boolean directIo;
+
+    // segment i is at index i; dropped or missing segments are null.
+    // Guarded by this; page I/O also holds the read lock of segmentLock,
+    // which deleting a segment holds for writing.
+    private final ArrayList<ExtentFile> segments = new ArrayList<ExtentFile>();
+    private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructs a segmented heap file stored in the specified directory,
+     * creating the directory if needed and picking up any segment files
+     * already in it.
+     *
+     * @param dir
+     *            the directory holding the segment files.
+     * @param pagesPerSegment
+     *            the number of pages stored in each segment file.
+     */
+    public SegmentedHeapFile(File dir, TupleDesc td, int pagesPerSegment) {
+        this(dir, td, pagesPerSegment, DEFAULT_EXTENT_SIZE, false);
+    }
+
+    /**
+     * Constructs a segmented heap file whose segments grow in extents of the
+     * given size and optionally use direct I/O.
+     *
+     * @see HeapFile#HeapFile(File, TupleDesc, int, boolean)
+     */
+    public SegmentedHeapFile(File dir, TupleDesc td, int pagesPerSegment,
+                             int extentSize, boolean directIo) {
+        super(dir, td, PageFormat.HEAP, null);
+        if (pagesPerSegment <= 0) {
+            throw new IllegalArgumentException("SegmentedHeapFile: pagesPerSegment must be positive");
+        }
+        this.dir = dir;
+        this.pagesPerSegment = pagesPerSegment;
+        this.extentSize = extentSize;
+        this.directIo = directIo;
+
+        dir.mkdirs();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                int seg = segmentNumber(f.getName());
+                if (seg >= 0) {
+                    while (segments.size() <= seg) {
+                        segments.add(null);
+                    }
+                    segments.set(seg, new ExtentFile(f, extentSize, directIo));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of pages stored in each segment file.
+     */
+    public int getPagesPerSegment() {
+        return pagesPerSegment;
+    }
+
+    /**
+     * @return the number of segments, including dropped segments below the
+     *         last one.
+     */
+    public synchronized int numSegments() {
+        return (numPages() + pagesPerSegment - 1) / pagesPerSegment;
+    }
+
+    // see DbFile.java for javadocs
+    public Page readPage(PageId pid) {
+        int tableId = pid.getTableId();
+        int pageNumber = pid.pageNumber();
+
+        byte[] data = HeapPage.createEmptyPageData();
+        segmentLock.readLock().lock();
+        try {
+            ExtentFile segment = getSegment(pageNumber / pagesPerSegment, false);
+            if (segment != null) {
+                segment.readPage(pageNumber % pagesPerSegment, data);
+            }
+            TuplePage page = newPage(new HeapPageId(tableId, pageNumber), data);
+            getZoneMap().update(pageNumber, page, false);
+            return page;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("SegmentedHeapFile: readPage: cannot read page " + pageNumber, e);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    // see DbFile.java for javadocs
+    public void writePage(Page page) throws IOException {
+        int pageNumber = page.getId().pageNumber();
+        segmentLock.readLock().lock();
+        try {
+            getSegment(pageNumber / pagesPerSegment, true)
+                    .writePage(pageNumber % pagesPerSegment, page.getPageData());
+            setPageVersion(page);
+            getZoneMap().update(pageNumber, (TuplePage) page, true);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of pages in this file: the pages of all segments
+     * up to and including the last segment holding data.
+     */
+    public synchronized int numPages() {
+        for (int seg = segments.size() - 1; seg >= 0; seg--) {
+            ExtentFile segment = segments.get(seg);
+            if (segment != null && segment.numPages() > 0) {
+                return seg * pagesPerSegment + segment.numPages();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Shrinks this file to the given number of pages: segments past the end
+     * are deleted and the last remaining segment is truncated.
+     */
+    protected void truncate(int pages) throws IOException {
+        // outside the lock on this, which writePage takes with the
+        // BufferPool locked
+        discardPages(pages, numPages());
+        segmentLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                for (int seg = segments.size() - 1; seg >= 0; seg--) {
+                    ExtentFile segment = segments.get(seg);
+                    if (segment == null) {
+                        continue;
+                    }
+                    int from = seg * pagesPerSegment;
+                    if (pages > from) {
+                        if (pages - from < segment.numPages()) {
+                            segment.truncate(pages - from);
+                        }
+                        break;
+                    }
+                    segments.set(seg, null);
+                    if (!segment.delete()) {
+                        throw new IOException("SegmentedHeapFile: cannot delete " + segment.getFile());
+                    }
+                }
+            }
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+        getZoneMap().truncate(pages);
+    }
+
+    /**
+     * Returns the newest modification time of the directory and its segment
+     * files, since writing a page into a segment does not touch the
+     * directory. Only uses the directory, as it runs before the fields of
+     * this class are set.
+     */
+    protected long lastModified() {
+        long newest = getFile().lastModified();
+        File[] files = getFile().listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (segmentNumber(f.getName()) >= 0) {
+                    newest = Math.max(newest, f.lastModified());
+                }
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Returns an iterator over the tuples stored in one segment.
+     *
+     * @param segment the segment to scan
+     */
+    public DbFileIterator segmentIterator(TransactionId tid, int segment) {
+        int from = segment * pagesPerSegment;
+        return iterator(tid, from, Math.min(from + pagesPerSegment, numPages()));
+    }
+
+    /**
+     * Drops a whole segment: its pages are discarded from the BufferPool,
+     * its file is deleted, and their zone map summaries and schema versions
+     * are forgotten. The tuples stored on it are gone, and its pages read as
+     * empty from then on.
+     *
+     * @param segment the segment to drop
+     * @throws IOException if the segment file cannot be deleted
+     */
+    public void dropSegment(int segment) throws IOException {
+        int from = segment * pagesPerSegment;
+        int to = from + pagesPerSegment;
+        // the BufferPool is not called with segmentLock held, as it calls
+        // writePage with its own lock held; pages are discarded before the
+        // file goes so they are not evicted into it, and again after it
+        // went in case a read cached one in between
+        discardPages(from, to);
+        segmentLock.writeLock().lock();
+        try {
+            ExtentFile file;
+            synchronized (this) {
+                file = segment < segments.size() ? segments.get(segment) : null;
+                if (file == null) {
+                    return;
+                }
+                segments.set(segment, null);
+            }
+            if (!file.delete()) {
+                throw new IOException("SegmentedHeapFile: cannot delete " + file.getFile());
+            }
+            clearPageVersions(from, to);
+            getZoneMap().clear(from, to);
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+        discardPages(from, to);
+    }
+
+    private void discardPages(int from, int to) {
+        for (int pageNo = from; pageNo < to; pageNo++) {
+            Database.getBufferPool().discardPage(new HeapPageId(getId(), pageNo));
+        }
+    }
+
+    private synchronized ExtentFile getSegment(int segment, boolean create) {
+        ExtentFile file = segment < segments.size() ? segments.get(segment) : null;
+        if (file == null && create) {
+            while (segments.size() <= segment) {
+                segments.add(null);
+            }
+            file = new ExtentFile(new File(dir, segment + SEGMENT_SUFFIX), extentSize, directIo);
+            segments.set(segment, file);
+        }
+        return file;
+    }
+
+    /**
+     * @return the segment number encoded in a segment file name, or -1 if
+     *         the name is not that of a segment file.
+     */
+    private static int segmentNumber(String name) {
+        if (!name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
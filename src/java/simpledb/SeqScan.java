@@ -7,13 +7,20 @@ import java.util.*;
  * each tuple of a table in no particular order (e.g., as they are laid out on
  * disk).
  */
-public class SeqScan implements DbIterator {
+public class SeqScan implements DbIterator, BatchIterator {
 
     private static final long serialVersionUID = 1L;
     private TransactionId tid;
     private int tableid;
     private String tableAlias;
     private DbFileIterator dbiterator;
+    private final Predicate predicate;
+    private final int[] columns;
+    // the compiled filter of a scan created with a PredicateExpression
+    private transient PredicateExpression.Compiled compiled;
+    // the batch-at-a-time scan, opened by the first call to nextBatch
+    private transient BatchIterator batches;
+    private transient boolean batchesOpen;
 
     /**
      * Creates a sequential scan over the specified table as a part of the
@@ -32,12 +39,95 @@ public class SeqScan implements DbIterator {
      *            tableAlias.null, or null.null).
      */
     public SeqScan(TransactionId tid, int tableid, String tableAlias) {
+        this(tid, tableid, tableAlias, null, null);
+    }
+
+    /**
+     * Creates a sequential scan that only returns the tuples satisfying a
+     * predicate. On a HeapFile, pages whose zone map shows they cannot
+     * hold a matching tuple are not read at all, and the predicate is
+     * evaluated on the page data before any Tuple is built.
+     *
+     * @param predicate
+     *            the filter to apply, with field numbers of the table; null
+     *            to return all tuples.
+     * @see ZoneMap
+     */
+    public SeqScan(TransactionId tid, int tableid, String tableAlias, Predicate predicate) {
+        this(tid, tableid, tableAlias, predicate, null);
+    }
+
+    /**
+     * Creates a sequential scan that only returns the given fields of each
+     * tuple. On a HeapFile the other fields are not decoded at all.
+     *
+     * @param columns
+     *            the indexes of the fields of the table to return, in order;
+     *            getTupleDesc() only has these fields.
+     */
+    public SeqScan(TransactionId tid, int tableid, String tableAlias, int[] columns) {
+        this(tid, tableid, tableAlias, null, columns);
+    }
+
+    /**
+     * Creates a sequential scan that only returns the tuples satisfying an
+     * expression. The expression is compiled once, here, against the schema
+     * of the table; on a HeapFile it is evaluated through a page cursor, so
+     * INT_TYPE fields are compared in place and a Tuple is only built for
+     * the tuples that match.
+     *
+     * @param expression
+     *            the filter to apply, with field numbers of the table.
+     * @see PredicateExpression#compile
+     */
+    public SeqScan(TransactionId tid, int tableid, String tableAlias, PredicateExpression expression) {
+        this(tid, tableid, tableAlias, null, null,
+                expression.compile(Database.getCatalog().getDatabaseFile(tableid).getTupleDesc()));
+    }
+
+    /**
+     * Creates a sequential scan that returns the given fields of the tuples
+     * satisfying a predicate. The predicate may test fields that are not
+     * returned.
+     *
+     * @param predicate
+     *            the filter to apply, with field numbers of the table; null
+     *            to return all tuples.
+     * @param columns
+     *            the indexes of the fields of the table to return, in order;
+     *            null to return all of them.
+     */
+    public SeqScan(TransactionId tid, int tableid, String tableAlias, Predicate predicate, int[] columns) {
+        this(tid, tableid, tableAlias, predicate, columns, null);
+    }
+
+    private SeqScan(TransactionId tid, int tableid, String tableAlias, Predicate predicate, int[] columns,
+                    PredicateExpression.Compiled compiled) {
         // some code goes here
         this.tid = tid;
         this.tableid = tableid;
         this.tableAlias = tableAlias;
-        DbFile dbf = Database.getCatalog().getDatabaseFile(tableid);
-        this.dbiterator = dbf.iterator(tid);
+        this.predicate = predicate;
+        this.columns = columns == null ? null : columns.clone();
+        this.compiled = compiled;
+        this.dbiterator = compiled != null ? new ExpressionIterator()
+                : fileIterator(Database.getCatalog().getDatabaseFile(tableid));
+    }
+
+    /**
+     * @return a new iterator over the tuples of the file that satisfy the
+     *         predicate, with the columns of this scan
+     */
+    private DbFileIterator fileIterator(DbFile dbf) {
+        if (predicate == null && columns == null) {
+            return dbf.iterator(tid);
+        } else if (dbf instanceof HeapFile) {
+            return columns == null ? ((HeapFile) dbf).iterator(tid, predicate)
+                    : ((HeapFile) dbf).iterator(tid, predicate, columns);
+        } else {
+            TupleDesc projected = columns == null ? null : dbf.getTupleDesc().project(columns);
+            return new FilterIterator(dbf.iterator(tid), predicate, columns, projected);
+        }
     }
 
     /**
@@ -86,11 +176,18 @@ public class SeqScan implements DbIterator {
         } catch (TransactionAbortedException e) {
             throw new TransactionAbortedException();
         }
+        if (batches != null) {
+            batches.close();
+        }
+        batches = batchIterator();
+        batchesOpen = false;
     }
 
     /**
      * Returns the TupleDesc with field names from the underlying HeapFile,
-     * prefixed with the tableAlias string from the constructor. This prefix
+     * prefixed with the tableAlias string from the constructor. If the scan
+     * was created with a list of columns, only those fields are included,
+     * in that order. This prefix
      * becomes useful when joining tables containing a field(s) with the same
      * name.  The alias and name should be separated with a "." character
      * (e.g., "alias.fieldName").
@@ -100,22 +197,32 @@ public class SeqScan implements DbIterator {
      */
     public TupleDesc getTupleDesc() {
         // some code goes here
+        return aliasedTupleDesc(tableid, tableAlias, columns);
+    }
+
+    /**
+     * @return the TupleDesc of a scan of the given table: its fields, or
+     *         the given columns of it, named alias.fieldName.
+     */
+    static TupleDesc aliasedTupleDesc(int tableid, String tableAlias, int[] columns) {
         TupleDesc to_change = Database.getCatalog().getDatabaseFile(tableid).getTupleDesc();
         int tuple_length = to_change.numFields();
         Type[] typeAr = new Type[tuple_length];
         String[] fieldAr = new String[tuple_length];
+        int[] lengthAr = new int[tuple_length];
         for (int i=0; i<tuple_length; i++) {
             try {
                 fieldAr[i] = tableAlias + "." + to_change.getFieldName(i);  //get the type name
                 //then get the fieldType
                 typeAr[i] = to_change.getFieldType(i);
+                lengthAr[i] = to_change.getStringLength(i);
             } catch (NoSuchElementException e) {
                 fieldAr[i] = tableAlias + "." + "null";
                 typeAr[i] = null;
             }
         }
-        TupleDesc result = new TupleDesc(typeAr, fieldAr);
-        return result;
+        TupleDesc result = new TupleDesc(typeAr, fieldAr, lengthAr);
+        return columns == null ? result : result.project(columns);
     }
 
     public boolean hasNext() throws TransactionAbortedException, DbException {
@@ -157,11 +264,282 @@ public class SeqScan implements DbIterator {
     public void close() {
         // some code goes here
         dbiterator.close();
+        if (batches != null) {
+            batches.close();
+            batches = null;
+            batchesOpen = false;
+        }
     }
 
     public void rewind() throws DbException, NoSuchElementException,
             TransactionAbortedException {
         // some code goes here
         dbiterator.rewind();
+        if (batchesOpen) {
+            batches.rewind();
+        }
+    }
+
+    /**
+     * Returns the next batch of tuples of the scan. On a HeapFile the
+     * batches are filled column by column from the page data; other files
+     * are read through their DbFileIterator. The batches come from an
+     * iterator of their own, which open() and rewind() reset, so reading
+     * with nextBatch() does not move next() and the other way round.
+     *
+     * @see BatchIterator#nextBatch
+     * @throws IllegalStateException if the scan is not open
+     */
+    public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+        if (batches == null) {
+            throw new IllegalStateException("Operator not yet open");
+        }
+        if (!batchesOpen) {
+            // the batch buffers are only allocated once batches are read
+            batches.open();
+            batchesOpen = true;
+        }
+        return batches.nextBatch();
+    }
+
+    /**
+     * @return a new, unopened batch iterator over the tuples of this scan
+     */
+    private BatchIterator batchIterator() {
+        DbFile dbf = Database.getCatalog().getDatabaseFile(tableid);
+        if (compiled != null) {
+            BatchIterator all = dbf instanceof HeapFile ? ((HeapFile) dbf).batchIterator(tid, null)
+                    : new FileBatchIterator(dbf.iterator(tid), dbf.getTupleDesc());
+            return new ExpressionBatchIterator(all);
+        } else if (dbf instanceof HeapFile) {
+            return columns == null ? ((HeapFile) dbf).batchIterator(tid, predicate)
+                    : ((HeapFile) dbf).batchIterator(tid, predicate, columns);
+        }
+        TupleDesc td = dbf.getTupleDesc();
+        return new FileBatchIterator(fileIterator(dbf), columns == null ? td : td.project(columns));
+    }
+
+    /**
+     * Returns a new cursor over the table this operator scans, as part of
+     * this scan's transaction. Field indexes are those of the table, with
+     * all of its fields, whatever columns the scan returns.
+     * For a HeapFile the cursor reads fields in place from the pages; other
+     * files are scanned through their DbFileIterator. The cursor is
+     * independent of the open/next/rewind state of this operator.
+     *
+     * @see TupleCursor
+     */
+    public TupleCursor cursor() throws DbException, TransactionAbortedException {
+        DbFile dbf = Database.getCatalog().getDatabaseFile(tableid);
+        if (dbf instanceof HeapFile) {
+            return ((HeapFile) dbf).cursor(tid);
+        }
+        DbFileIterator it = dbf.iterator(tid);
+        it.open();
+        return new IteratorCursor(it);
+    }
+
+    /**
+     * Returns the tuples of a DbFileIterator that satisfy a predicate, if
+     * any, with only the given columns, if any.
+     */
+    private static class FilterIterator extends AbstractDbFileIterator {
+        private final DbFileIterator it;
+        private final Predicate predicate;
+        private final int[] columns;
+        private final TupleDesc projected;
+
+        public FilterIterator(DbFileIterator it, Predicate predicate, int[] columns, TupleDesc projected) {
+            this.it = it;
+            this.predicate = predicate;
+            this.columns = columns;
+            this.projected = projected;
+        }
+
+        public void open() throws DbException, TransactionAbortedException {
+            it.open();
+        }
+
+        public void rewind() throws DbException, TransactionAbortedException {
+            super.close();
+            it.rewind();
+        }
+
+        public void close() {
+            super.close();
+            it.close();
+        }
+
+        protected Tuple readNext() throws DbException, TransactionAbortedException {
+            while (it.hasNext()) {
+                Tuple t = it.next();
+                if (predicate == null || predicate.filter(t)) {
+                    return columns == null ? t : t.project(columns, projected);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns the tuples of the table that satisfy the compiled expression,
+     * testing each one through a cursor before building its Tuple.
+     */
+    private class ExpressionIterator extends AbstractDbFileIterator {
+        private TupleCursor tuples;
+
+        public void open() throws DbException, TransactionAbortedException {
+            tuples = cursor();
+        }
+
+        public void rewind() throws DbException, TransactionAbortedException {
+            close();
+            open();
+        }
+
+        public void close() {
+            super.close();
+            tuples = null;
+        }
+
+        protected Tuple readNext() throws DbException, TransactionAbortedException {
+            if (tuples == null) {
+                return null;
+            }
+            while (tuples.advance()) {
+                if (compiled.test(tuples)) {
+                    return tuples.getTuple();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Filters the batches of another BatchIterator with the compiled
+     * expression, skipping batches with no selected rows.
+     */
+    private class ExpressionBatchIterator implements BatchIterator {
+        private final BatchIterator child;
+
+        public ExpressionBatchIterator(BatchIterator child) {
+            this.child = child;
+        }
+
+        public void open() throws DbException, TransactionAbortedException {
+            child.open();
+        }
+
+        public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+            TupleBatch batch;
+            while ((batch = child.nextBatch()) != null) {
+                if (compiled.filter(batch) > 0) {
+                    return batch;
+                }
+            }
+            return null;
+        }
+
+        public void rewind() throws DbException, TransactionAbortedException {
+            child.rewind();
+        }
+
+        public TupleDesc getTupleDesc() {
+            return child.getTupleDesc();
+        }
+
+        public void close() {
+            child.close();
+        }
+    }
+
+    /**
+     * Reads the tuples of a DbFileIterator, which it opens, in batches.
+     */
+    private static class FileBatchIterator implements BatchIterator {
+        private final DbFileIterator it;
+        private final TupleDesc td;
+        private TupleBatch batch;
+
+        public FileBatchIterator(DbFileIterator it, TupleDesc td) {
+            this.it = it;
+            this.td = td;
+        }
+
+        public void open() throws DbException, TransactionAbortedException {
+            it.open();
+            batch = new TupleBatch(td);
+        }
+
+        public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+            batch.clear();
+            while (!batch.isFull() && it.hasNext()) {
+                batch.addTuple(it.next());
+            }
+            return batch.size() == 0 ? null : batch;
+        }
+
+        public void rewind() throws DbException, TransactionAbortedException {
+            it.rewind();
+        }
+
+        public TupleDesc getTupleDesc() {
+            return td;
+        }
+
+        public void close() {
+            it.close();
+            batch = null;
+        }
+    }
+
+    /**
+     * A cursor over the tuples returned by a DbFileIterator.
+     */
+    private static class IteratorCursor implements TupleCursor {
+        private final DbFileIterator it;
+        private Tuple current;
+
+        public IteratorCursor(DbFileIterator it) {
+            this.it = it;
+        }
+
+        public boolean advance() throws DbException, TransactionAbortedException {
+            if (it.hasNext()) {
+                current = it.next();
+                return true;
+            }
+            current = null;
+            it.close();
+            return false;
+        }
+
+        public int getInt(int field) {
+            return ((IntField) current.getField(field)).getValue();
+        }
+
+        public long getLong(int field) {
+            return current.getLong(field);
+        }
+
+        public double getDouble(int field) {
+            return current.getDouble(field);
+        }
+
+        public String getString(int field) {
+            return ((StringField) current.getField(field)).getValue();
+        }
+
+        public Field getField(int field) {
+            return current.getField(field);
+        }
+
+        public RecordId getRecordId() {
+            return current.getRecordId();
+        }
+
+        public Tuple getTuple() {
+            return current;
+        }
     }
 }
\ No newline at end of file
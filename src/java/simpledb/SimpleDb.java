@@ -15,6 +15,7 @@ public class SimpleDb {
             File targetDatFile=new File(args[1].replaceAll(".txt", ".dat"));
             int numOfAttributes=Integer.parseInt(args[2]);
             Type[] ts = new Type[numOfAttributes];
+            int[] lengths = new int[numOfAttributes];
             char fieldSeparator=',';
 
             if (args.length == 3) 
@@ -30,21 +31,21 @@ public class SimpleDb {
                 }
                 int index=0;
                 for (String s: typeStringAr) {
-                        if (s.toLowerCase().equals("int"))
-                            ts[index++]=Type.INT_TYPE;
-                        else if (s.toLowerCase().equals("string"))
-                                ts[index++]=Type.STRING_TYPE;
-                            else {
-                                System.err.println("Unknown type " + s);
-                                return;
-                            }
+                        Type type = Type.forName(s);
+                        if (type != null) {
+                            lengths[index] = Type.stringLength(s);
+                            ts[index++]=type;
+                        } else {
+                            System.err.println("Unknown type " + s);
+                            return;
+                        }
                 }
                 if (args.length==5)
                     fieldSeparator=args[4].charAt(0);
             }
 
             HeapFileEncoder.convert(sourceTxtFile,targetDatFile,
-                        BufferPool.getPageSize(),numOfAttributes,ts,fieldSeparator);
+                        BufferPool.getPageSize(),numOfAttributes,ts,lengths,fieldSeparator);
 
         } catch (IOException e) {
                 throw new RuntimeException(e);
@@ -0,0 +1,500 @@
+package simpledb;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * SlottedHeapPage is a page of a HeapFile that stores variable-length
+ * records. Unlike {@link HeapPage}, a string field only takes as many bytes
+ * as its value, so tables with short strings fit many more tuples per page.
+ * <p>
+ * The page starts with a 4-byte header: the number of entries in the slot
+ * directory and the offset of the start of the record area, both unsigned
+ * 16-bit values (an offset of 0 stands for the end of the page). The slot
+ * directory follows, one 4-byte entry per slot holding the offset and
+ * length of its record; an offset of 0 marks an empty slot. Records are
+ * allocated from the end of the page towards the directory.
+ * <p>
+ * In a record, integer fields take 4 bytes and string fields a 2-byte length
+ * followed by the characters of the string. Slot numbers are used as tuple
+ * numbers in RecordIds and never change while the tuple is on the page;
+ * when deletes leave the free space fragmented, the records are moved
+ * together before the next insert that needs the room.
+ *
+ * @see HeapFile
+ * @see PageFormat#SLOTTED
+ */
+public class SlottedHeapPage implements TuplePage {
+
+    static final int HEADER_SIZE = 4;
+    static final int SLOT_SIZE = 4;
+
+    /** Offsets are 16-bit, which limits the page size. */
+    static final int MAX_PAGE_SIZE = 1 << 16;
+
+    final HeapPageId pid;
+    final TupleDesc td;
+    final int pageSize;
+
+    // the serialized page image, kept up to date by insertTuple/deleteTuple
+    final ByteBuffer data;
+
+    private int numSlots;
+    private int recordStart;
+    private int usedBytes;
+    private int numTuples;
+
+    // null until the page is first modified after a load or commit
+    byte[] oldData;
+    private final Object oldDataLock = new Object();
+
+    private boolean isDirty;
+    private TransactionId transactionId;
+
+    /**
+     * Create a SlottedHeapPage from a set of bytes of data read from disk.
+     * An all-zero page, such as {@link HeapPage#createEmptyPageData}, is an
+     * empty page.
+     *
+     * @throws IOException if the data is not a valid slotted page
+     */
+    public SlottedHeapPage(HeapPageId id, byte[] data) throws IOException {
+        this.pid = id;
+        this.td = Database.getCatalog().getTupleDesc(id.getTableId());
+        this.pageSize = BufferPool.getPageSize();
+        if (pageSize > MAX_PAGE_SIZE) {
+            throw new IOException("SlottedHeapPage: page size " + pageSize + " is too large");
+        }
+        if (data.length < pageSize) {
+            throw new IOException("SlottedHeapPage: page data is too short");
+        }
+        this.data = ByteBuffer.wrap(Arrays.copyOf(data, pageSize));
+
+        numSlots = this.data.getChar(0);
+        recordStart = this.data.getChar(2);
+        if (recordStart == 0) {
+            recordStart = pageSize;
+        }
+        if (directoryEnd() > recordStart) {
+            throw new IOException("SlottedHeapPage: corrupt slot directory");
+        }
+        for (int i = 0; i < numSlots; i++) {
+            if (isSlotUsed(i)) {
+                if (recordOffset(i) < recordStart || recordOffset(i) + recordLength(i) > pageSize) {
+                    throw new IOException("SlottedHeapPage: corrupt slot " + i);
+                }
+                usedBytes += recordLength(i);
+                numTuples++;
+            }
+        }
+    }
+
+    /**
+     * @return the PageId associated with this page.
+     */
+    public HeapPageId getId() {
+        return pid;
+    }
+
+    /** Return a view of this page before it was modified
+     -- used by recovery */
+    public SlottedHeapPage getBeforeImage() {
+        try {
+            byte[] oldDataRef = null;
+            synchronized (oldDataLock) {
+                oldDataRef = oldData;
+            }
+            return new SlottedHeapPage(pid, oldDataRef != null ? oldDataRef : data.array());
+        } catch (IOException e) {
+            e.printStackTrace();
+            //should never happen -- we parsed it OK before!
+            System.exit(1);
+        }
+        return null;
+    }
+
+    /**
+     * Makes the current contents of this page its before image. The image
+     * is not copied until the page is next modified.
+     */
+    public void setBeforeImage() {
+        synchronized (oldDataLock) {
+            oldData = null;
+        }
+    }
+
+    /**
+     * Saves the current contents as the before image unless one was already
+     * taken since the last load or commit. Called before every modification.
+     */
+    private void copyOnWrite() {
+        synchronized (oldDataLock) {
+            if (oldData == null) {
+                oldData = getPageData();
+            }
+        }
+    }
+
+    /**
+     * Generates a byte array representing the contents of this page: a
+     * copy of the page image.
+     *
+     * @see #SlottedHeapPage
+     */
+    public byte[] getPageData() {
+        return data.array().clone();
+    }
+
+    /**
+     * @return the number of entries in the slot directory, used or not.
+     */
+    public int getNumSlots() {
+        return numSlots;
+    }
+
+    /**
+     * @return the number of tuples stored on this page.
+     */
+    public int getNumTuples() {
+        return numTuples;
+    }
+
+    /**
+     * @return the number of bytes not taken by the header, the slot
+     *         directory or live records, whether contiguous or not.
+     */
+    public int getFreeSpace() {
+        return pageSize - directoryEnd() - usedBytes;
+    }
+
+    /**
+     * Returns true if associated slot on this page is filled.
+     */
+    public boolean isSlotUsed(int i) {
+        return i >= 0 && i < numSlots && recordOffset(i) != 0;
+    }
+
+    public boolean isEmpty() {
+        return numTuples == 0;
+    }
+
+    public boolean hasRoomFor(Tuple t) {
+        if (!td.equals(t.getTupleDesc())) {
+            return false;
+        }
+        int needed = recordSize(t) + (freeSlot() < 0 ? SLOT_SIZE : 0);
+        return needed <= getFreeSpace();
+    }
+
+    /**
+     * Returns the tuple stored in the given slot.
+     *
+     * @return the tuple in the slot, or null if the slot is empty.
+     */
+    public Tuple getTuple(int slotId) {
+        if (!isSlotUsed(slotId)) {
+            return null;
+        }
+        Tuple t = new Tuple(td);
+        t.setRecordId(new RecordId(pid, slotId));
+        int offset = recordOffset(slotId);
+        for (int j = 0; j < td.numFields(); j++) {
+            Type type = td.getFieldType(j);
+            if (type == Type.STRING_TYPE) {
+                int len = data.getChar(offset);
+                t.setField(j, StringField.fromBytes(data.array(), offset + 2, len, td.getStringLength(j)));
+                offset += 2 + len;
+            } else if (type == Type.INT_TYPE) {
+                t.setInt(j, data.getInt(offset));
+                offset += type.getLen();
+            } else {
+                t.setField(j, type.parse(data, offset));
+                offset += type.getLen();
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Adds the specified tuple to the page;  the tuple should be updated to reflect
+     *  that it is now stored on this page.
+     * @throws DbException if the page has no room for the tuple or tupledesc
+     *         is mismatch.
+     * @param t The tuple to add.
+     */
+    public void insertTuple(Tuple t) throws DbException {
+        if (!td.equals(t.getTupleDesc())) {
+            throw new DbException("insertTuple: tupledesc mismatch");
+        }
+        int size = recordSize(t);
+        int slot = freeSlot();
+        int needed = size + (slot < 0 ? SLOT_SIZE : 0);
+        if (needed > getFreeSpace()) {
+            throw new DbException("insertTuple: no room for a " + size + " byte record");
+        }
+        copyOnWrite();
+        if (needed > recordStart - directoryEnd()) {
+            compactRecords();
+        }
+        if (slot < 0) {
+            slot = numSlots++;
+        }
+
+        recordStart -= size;
+        encode(t, recordStart);
+        setSlot(slot, recordStart, size);
+        usedBytes += size;
+        numTuples++;
+        writeHeader();
+        t.setRecordId(new RecordId(pid, slot));
+    }
+
+    /**
+     * Delete the specified tuple from the page;  the tuple should be updated to reflect
+     *   that it is no longer stored on any page.
+     * @throws DbException if this tuple is not on this page, or tuple slot is
+     *         already empty.
+     * @param t The tuple to delete
+     */
+    public void deleteTuple(Tuple t) throws DbException {
+        RecordId rid = t.getRecordId();
+        if (rid == null || !pid.equals(rid.getPageId())) {
+            throw new DbException("deleteTuple: tuple is not on this page");
+        }
+        int slot = rid.tupleno();
+        if (!isSlotUsed(slot)) {
+            throw new DbException("deleteTuple: the slot is empty");
+        }
+
+        copyOnWrite();
+        int offset = recordOffset(slot);
+        int length = recordLength(slot);
+        Arrays.fill(data.array(), offset, offset + length, (byte) 0);
+        setSlot(slot, 0, 0);
+        usedBytes -= length;
+        numTuples--;
+        if (offset == recordStart) {
+            recordStart += length;
+        }
+        while (numSlots > 0 && !isSlotUsed(numSlots - 1)) {
+            numSlots--;
+        }
+        if (numTuples == 0) {
+            recordStart = pageSize;
+        }
+        writeHeader();
+    }
+
+    /**
+     * Moves all records to the end of the page so that the free space
+     * between the slot directory and the records is contiguous. Slot
+     * numbers do not change.
+     */
+    void compactRecords() {
+        copyOnWrite();
+        byte[] image = data.array();
+        byte[] old = image.clone();
+        int end = pageSize;
+        for (int i = 0; i < numSlots; i++) {
+            if (isSlotUsed(i)) {
+                int length = recordLength(i);
+                end -= length;
+                System.arraycopy(old, recordOffset(i), image, end, length);
+                setSlot(i, end, length);
+            }
+        }
+        recordStart = end;
+        Arrays.fill(image, directoryEnd(), recordStart, (byte) 0);
+        writeHeader();
+    }
+
+    /**
+     * Marks this page as dirty/not dirty and record that transaction
+     * that did the dirtying
+     */
+    public void markDirty(boolean dirty, TransactionId tid) {
+        isDirty = dirty;
+        transactionId = dirty ? tid : null;
+    }
+
+    /**
+     * Returns the tid of the transaction that last dirtied this page, or null if the page is not dirty
+     */
+    public TransactionId isDirty() {
+        return transactionId;
+    }
+
+    /**
+     * @return an iterator over all tuples on this page (calling remove on
+     *         this iterator throws an UnsupportedOperationException)
+     */
+    public Iterator<Tuple> iterator() {
+        return new SlottedPageTupleIterator();
+    }
+
+    /**
+     * An iterator over the used slots of this page that decodes each tuple
+     * when it is returned.
+     */
+    private class SlottedPageTupleIterator implements Iterator<Tuple> {
+        private int next = nextUsedSlot(0);
+
+        private int nextUsedSlot(int from) {
+            for (int i = from; i < numSlots; i++) {
+                if (isSlotUsed(i)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        public Tuple next() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            Tuple t = getTuple(next);
+            next = nextUsedSlot(next + 1);
+            return t;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("TupleIterator: remove not supported");
+        }
+    }
+
+    public TupleCursor cursor() {
+        return new SlottedPageCursor();
+    }
+
+    /**
+     * A cursor over the used slots of this page. The field offsets of the
+     * current record are computed when the cursor moves onto it.
+     */
+    private class SlottedPageCursor implements TupleCursor {
+        private final int[] offsets = new int[td.numFields()];
+        private int slot = -1;
+
+        public boolean advance() {
+            do {
+                slot++;
+            } while (slot < numSlots && !isSlotUsed(slot));
+            if (slot >= numSlots) {
+                slot = numSlots;
+                return false;
+            }
+            int offset = recordOffset(slot);
+            for (int j = 0; j < offsets.length; j++) {
+                offsets[j] = offset;
+                Type type = td.getFieldType(j);
+                offset += type == Type.STRING_TYPE ? 2 + data.getChar(offset) : type.getLen();
+            }
+            return true;
+        }
+
+        public int getInt(int field) {
+            return data.getInt(offsets[field]);
+        }
+
+        public long getLong(int field) {
+            return data.getLong(offsets[field]);
+        }
+
+        public double getDouble(int field) {
+            return data.getDouble(offsets[field]);
+        }
+
+        public String getString(int field) {
+            return new String(data.array(), offsets[field] + 2, data.getChar(offsets[field]), StandardCharsets.ISO_8859_1);
+        }
+
+        public Field getField(int field) {
+            Type type = td.getFieldType(field);
+            if (type == Type.STRING_TYPE) {
+                return StringField.fromBytes(data.array(), offsets[field] + 2, data.getChar(offsets[field]),
+                        td.getStringLength(field));
+            }
+            return type.parse(data, offsets[field]);
+        }
+
+        public RecordId getRecordId() {
+            return new RecordId(pid, slot);
+        }
+
+        public Tuple getTuple() {
+            return SlottedHeapPage.this.getTuple(slot);
+        }
+    }
+
+    private int directoryEnd() {
+        return HEADER_SIZE + numSlots * SLOT_SIZE;
+    }
+
+    private int recordOffset(int slot) {
+        return data.getChar(HEADER_SIZE + slot * SLOT_SIZE);
+    }
+
+    private int recordLength(int slot) {
+        return data.getChar(HEADER_SIZE + slot * SLOT_SIZE + 2);
+    }
+
+    private void setSlot(int slot, int offset, int length) {
+        data.putChar(HEADER_SIZE + slot * SLOT_SIZE, (char) offset);
+        data.putChar(HEADER_SIZE + slot * SLOT_SIZE + 2, (char) length);
+    }
+
+    private void writeHeader() {
+        data.putChar(0, (char) numSlots);
+        data.putChar(2, (char) (recordStart == pageSize ? 0 : recordStart));
+    }
+
+    /**
+     * @return the first empty slot in the directory, or -1 if all are used.
+     */
+    private int freeSlot() {
+        for (int i = 0; i < numSlots; i++) {
+            if (!isSlotUsed(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of bytes the record of the tuple takes.
+     */
+    private int recordSize(Tuple t) {
+        int size = 0;
+        for (int j = 0; j < td.numFields(); j++) {
+            Type type = td.getFieldType(j);
+            if (type == Type.STRING_TYPE) {
+                size += 2 + t.stringLength(j);
+            } else {
+                size += type.getLen();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes the record of the tuple into the page image at the given offset.
+     */
+    private void encode(Tuple t, int offset) {
+        for (int j = 0; j < td.numFields(); j++) {
+            Type type = td.getFieldType(j);
+            if (type == Type.STRING_TYPE) {
+                int len = t.copyStringBytes(j, data.array(), offset + 2);
+                data.putChar(offset, (char) len);
+                offset += 2 + len;
+            } else {
+                t.getFieldBytes(j, data.array(), offset);
+                offset += type.getLen();
+            }
+        }
+    }
+}
@@ -1,24 +1,37 @@
 package simpledb;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Instance of Field that stores a single String of a fixed length.
+ * <p>
+ * The string is held as the bytes it is stored as on disk, one byte per
+ * character (ISO-8859-1), so reading it from a page, comparing, hashing and
+ * writing it back never decode or encode characters. The String is only
+ * built when {@link #getValue} or {@link #toString} asks for it. Strings
+ * with characters outside ISO-8859-1 are rejected rather than mangled.
  */
 public class StringField implements Field {
 
 	private static final long serialVersionUID = 1L;
 
-	private final String value;
+	private final byte[] bytes;
 	private final int maxSize;
+	private transient String value;
 
 	public String getValue() {
+		if (value == null) {
+			value = new String(bytes, StandardCharsets.ISO_8859_1);
+		}
 		return value;
 	}
 
 	/**
 	 * Constructor.
-	 * 
+	 *
 	 * @param s
 	 *            The value of this field.
 	 * @param maxSize
@@ -27,49 +40,152 @@ public class StringField implements Field {
 	public StringField(String s, int maxSize) {
 		this.maxSize = maxSize;
 
-		if (s.length() > maxSize)
-			value = s.substring(0, maxSize);
-		else
-			value = s;
+		int len = Math.min(s.length(), maxSize);
+		bytes = new byte[len];
+		encode(s, len, bytes, 0);
+	}
+
+	/**
+	 * Writes the first len characters of s to dest, one byte each.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if one of them is not an ISO-8859-1 character
+	 */
+	static void encode(String s, int len, byte[] dest, int destOffset) {
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c > 0xFF) {
+				throw new IllegalArgumentException("StringField: character " + (int) c + " at " + i
+						+ " is not ISO-8859-1");
+			}
+			dest[destOffset + i] = (byte) c;
+		}
+	}
+
+	/**
+	 * Constructor for a string held in the given bytes, which the field
+	 * takes ownership of.
+	 */
+	private StringField(byte[] bytes, int maxSize) {
+		this.bytes = bytes;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return a string whose characters are the given bytes of src, which
+	 *         are copied, since pages overwrite their slots in place.
+	 */
+	static StringField fromBytes(byte[] src, int offset, int length, int maxSize) {
+		return new StringField(Arrays.copyOfRange(src, offset, offset + Math.min(length, maxSize)), maxSize);
+	}
+
+	/**
+	 * Reads a string in the format written by {@link #serialize} from the
+	 * given absolute offset of buf.
+	 *
+	 * @param maxSize
+	 *            The maximum size of the string, as it was serialized
+	 */
+	static StringField parse(ByteBuffer buf, int offset, int maxSize) {
+		int strLen = Math.max(0, Math.min(buf.getInt(offset), maxSize));
+		if (buf.hasArray()) {
+			return fromBytes(buf.array(), buf.arrayOffset() + offset + 4, strLen, maxSize);
+		}
+		byte bs[] = new byte[strLen];
+		for (int i = 0; i < strLen; i++) {
+			bs[i] = buf.get(offset + 4 + i);
+		}
+		return new StringField(bs, maxSize);
+	}
+
+	/**
+	 * Reads a string in the format written by {@link #serialize} from dis.
+	 */
+	static StringField parse(DataInputStream dis, int maxSize) throws IOException {
+		int strLen = dis.readInt();
+		byte bs[] = new byte[strLen];
+		dis.readFully(bs);
+		dis.skipBytes(maxSize - strLen);
+		return new StringField(strLen > maxSize ? Arrays.copyOf(bs, maxSize) : bs, maxSize);
+	}
+
+	/**
+	 * @return the maximum size of this string
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return the number of characters of this string
+	 */
+	public int length() {
+		return bytes.length;
+	}
+
+	/**
+	 * Copies the bytes of this string, at most max of them, to dest.
+	 *
+	 * @return the number of bytes copied
+	 */
+	int copyBytes(byte[] dest, int destOffset, int max) {
+		int len = Math.min(bytes.length, max);
+		System.arraycopy(bytes, 0, dest, destOffset, len);
+		return len;
 	}
 
 	public String toString() {
-		return value;
+		return getValue();
 	}
 
+	/**
+	 * The hash code is computed as {@link String#hashCode} would be on the
+	 * value, so it does not change with the representation.
+	 */
 	public int hashCode() {
-		return value.hashCode();
+		int h = 0;
+		for (byte b : bytes)
+			h = 31 * h + (b & 0xFF);
+		return h;
 	}
 
 	public boolean equals(Object field) {
-		return ((StringField) field).value.equals(value);
+		return Arrays.equals(((StringField) field).bytes, bytes);
 	}
 
 	/**
 	 * Write this string to dos. Always writes maxSize + 4 bytes to the passed
 	 * in dos. First four bytes are string length, next bytes are string, with
 	 * remainder padded with 0 to maxSize.
-	 * 
+	 *
 	 * @param dos
 	 *            Where the string is written
 	 */
 	public void serialize(DataOutputStream dos) throws IOException {
-		String s = value;
-		int overflow = maxSize - s.length();
-		if (overflow < 0) {
-			String news = s.substring(0, maxSize);
-			s = news;
-		}
-		dos.writeInt(s.length());
-		dos.writeBytes(s);
-		while (overflow-- > 0)
+		int len = Math.min(bytes.length, maxSize);
+		dos.writeInt(len);
+		dos.write(bytes, 0, len);
+		for (int i = len; i < maxSize; i++)
 			dos.write((byte) 0);
 	}
 
+	/**
+	 * Write this string to buf at the given absolute offset, in the format
+	 * of {@link #serialize(DataOutputStream)}: always maxSize + 4 bytes.
+	 */
+	public void serialize(ByteBuffer buf, int offset) {
+		int len = Math.min(bytes.length, maxSize);
+		buf.putInt(offset, len);
+		for (int i = 0; i < maxSize; i++) {
+			buf.put(offset + 4 + i, i < len ? bytes[i] : 0);
+		}
+	}
+
 	/**
 	 * Compare the specified field to the value of this Field. Return semantics
-	 * are as specified by Field.compare
-	 * 
+	 * are as specified by Field.compare. Strings are compared byte by byte,
+	 * which orders them as {@link String#compareTo} does.
+	 *
 	 * @throws IllegalCastException
 	 *             if val is not a StringField
 	 * @see Field#compare
@@ -77,32 +193,45 @@ public class StringField implements Field {
 	public boolean compare(Predicate.Op op, Field val) {
 
 		StringField iVal = (StringField) val;
-		int cmpVal = value.compareTo(iVal.value);
-
-		switch (op) {
-		case EQUALS:
-			return cmpVal == 0;
-
-		case NOT_EQUALS:
-			return cmpVal != 0;
-
-		case GREATER_THAN:
-			return cmpVal > 0;
-
-		case GREATER_THAN_OR_EQ:
-			return cmpVal >= 0;
 
-		case LESS_THAN:
-			return cmpVal < 0;
+		if (op == Predicate.Op.LIKE)
+			return indexOf(bytes, iVal.bytes) >= 0;
 
-		case LESS_THAN_OR_EQ:
-			return cmpVal <= 0;
+		return op.holds(compareBytes(bytes, iVal.bytes));
+	}
 
-		case LIKE:
-			return value.indexOf(iVal.value) >= 0;
+	/**
+	 * Compares two byte strings as unsigned bytes, a shorter string that is
+	 * a prefix of a longer one ordering first.
+	 */
+	private static int compareBytes(byte[] a, byte[] b) {
+		int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; i++) {
+			int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (c != 0)
+				return c;
 		}
+		return a.length - b.length;
+	}
 
-		return false;
+	/**
+	 * @return the first index of pattern in text, or -1 if it does not occur.
+	 */
+	private static int indexOf(byte[] text, byte[] pattern) {
+		if (pattern.length == 0)
+			return 0;
+		byte first = pattern[0];
+		int last = text.length - pattern.length;
+		for (int i = 0; i <= last; i++) {
+			if (text[i] != first)
+				continue;
+			int j = 1;
+			while (j < pattern.length && text[i + j] == pattern[j])
+				j++;
+			if (j == pattern.length)
+				return i;
+		}
+		return -1;
 	}
 
 	/**
@@ -0,0 +1,105 @@
+package simpledb;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Instance of Field that stores a point in time, as the number of
+ * milliseconds since 1970-01-01T00:00:00Z.
+ */
+public class TimestampField implements Field {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long epochMillis;
+
+    /**
+     * @return the number of milliseconds since 1970-01-01T00:00:00Z.
+     */
+    public long getValue() {
+        return epochMillis;
+    }
+
+    /**
+     * @return the point in time stored in this field.
+     */
+    public Instant getInstant() {
+        return Instant.ofEpochMilli(epochMillis);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param epochMillis The number of milliseconds since
+     *            1970-01-01T00:00:00Z.
+     */
+    public TimestampField(long epochMillis) {
+        this.epochMillis = epochMillis;
+    }
+
+    /**
+     * Parses a timestamp written as an ISO-8601 instant
+     * (2020-01-31T12:30:00Z), as a date and time in UTC with a space or a
+     * "T" between them (2020-01-31 12:30:00), or as a number of
+     * milliseconds since the epoch.
+     *
+     * @throws IllegalArgumentException if the text is not a valid timestamp.
+     */
+    public static TimestampField valueOf(String text) {
+        try {
+            if (text.endsWith("Z")) {
+                return new TimestampField(Instant.parse(text).toEpochMilli());
+            }
+            if (text.indexOf('-') > 0) {
+                LocalDateTime time = LocalDateTime.parse(text.replace(' ', 'T'));
+                return new TimestampField(time.toInstant(ZoneOffset.UTC).toEpochMilli());
+            }
+            return new TimestampField(Long.parseLong(text));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid timestamp: " + text, e);
+        }
+    }
+
+    public String toString() {
+        return getInstant().toString();
+    }
+
+    public int hashCode() {
+        return Long.hashCode(epochMillis);
+    }
+
+    public boolean equals(Object field) {
+        return field instanceof TimestampField && ((TimestampField) field).epochMillis == epochMillis;
+    }
+
+    public void serialize(DataOutputStream dos) throws IOException {
+        dos.writeLong(epochMillis);
+    }
+
+    public void serialize(ByteBuffer buf, int offset) {
+        buf.putLong(offset, epochMillis);
+    }
+
+    /**
+     * Compare the specified field to the value of this Field.
+     * Return semantics are as specified by Field.compare
+     *
+     * @throws IllegalCastException if val is not a TimestampField
+     * @see Field#compare
+     */
+    public boolean compare(Predicate.Op op, Field val) {
+        return op.holds(Long.compare(epochMillis, ((TimestampField) val).epochMillis));
+    }
+
+    /**
+     * Return the Type of this field.
+     * @return Type.TIMESTAMP_TYPE
+     */
+	public Type getType() {
+		return Type.TIMESTAMP_TYPE;
+	}
+}
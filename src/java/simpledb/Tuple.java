@@ -1,13 +1,23 @@
 package simpledb;
 
-import java.io.Serializable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 /**
  * Tuple maintains information about the contents of a tuple. Tuples have a
- * specified schema specified by a TupleDesc object and contain Field objects
- * with the data for each field.
+ * specified schema specified by a TupleDesc object and contain the data for
+ * each field.
+ * <p>
+ * The field values are packed into a single byte array: a bitmap of the
+ * fields that have been set, followed by the fields in the same fixed-size
+ * layout as a HeapPage slot (see {@link TupleDesc#getFieldOffset}). Values
+ * can be read and written with the typed accessors such as
+ * {@link #getInt} and {@link #setInt}; {@link #getField} and
+ * {@link #setField} convert from and to Field objects.
  */
 public class Tuple implements Serializable {
 
@@ -15,7 +25,9 @@ public class Tuple implements Serializable {
 
     private TupleDesc tupleDesc;
 
-    private Field[] fields;
+    // set-field bitmap followed by the packed field values
+    private byte[] data;
+    private int numFields;
 
     private RecordId recordId;
 
@@ -27,8 +39,7 @@ public class Tuple implements Serializable {
      *            instance with at least one field.
      */
     public Tuple(TupleDesc td) {
-        tupleDesc = td;
-        fields = new Field[td.numFields()];
+        resetTupleDesc(td);
     }
 
     /**
@@ -62,13 +73,33 @@ public class Tuple implements Serializable {
      * @param i
      *            index of the field to change. It must be a valid index.
      * @param f
-     *            new value for the field.
+     *            new value for the field, of the field's type; null to unset
+     *            the field.
+     * @throws IllegalArgumentException
+     *            if f is not of the type of the ith field.
      */
     public void setField(int i, Field f) {
         if (!isValid(i)){
             throw new NoSuchElementException("invalid index");
         }
-        fields[i] = f;
+        Type type = tupleDesc.getFieldType(i);
+        if (f == null) {
+            data[i >> 3] &= ~(1 << (i & 7));
+        } else if (f.getType() != type) {
+            throw new IllegalArgumentException("field " + i + " is of type " + type + ", not " + f.getType());
+        } else if (f instanceof IntField) {
+            setInt(i, ((IntField) f).getValue());
+        } else if (f instanceof StringField) {
+            int off = offset(i);
+            int maxLen = tupleDesc.getStringLength(i);
+            int len = ((StringField) f).copyBytes(data, off + 4, maxLen);
+            Arrays.fill(data, off + 4 + len, off + 4 + maxLen, (byte) 0);
+            writeInt(off, len);
+            data[i >> 3] |= 1 << (i & 7);
+        } else {
+            f.serialize(ByteBuffer.wrap(data), offset(i));
+            data[i >> 3] |= 1 << (i & 7);
+        }
     }
 
     /**
@@ -81,7 +112,136 @@ public class Tuple implements Serializable {
         if (!isValid(i)){
             throw new IllegalArgumentException("invalid index");
         }
-        return fields[i];
+        if (!isFieldSet(i)) {
+            return null;
+        }
+        Type type = tupleDesc.getFieldType(i);
+        if (type == Type.INT_TYPE) {
+            return new IntField(getInt(i));
+        } else if (type == Type.STRING_TYPE) {
+            return StringField.parse(ByteBuffer.wrap(data), offset(i), tupleDesc.getStringLength(i));
+        }
+        return type.parse(ByteBuffer.wrap(data), offset(i));
+    }
+
+    /**
+     * @return the value of the ith field, which must be an INT_TYPE field.
+     */
+    public int getInt(int i) {
+        return readInt(offset(i));
+    }
+
+    /**
+     * @return the value of the ith field, which must be a LONG_TYPE,
+     *         DATE_TYPE or TIMESTAMP_TYPE field: the number, the day or the
+     *         millisecond since the epoch.
+     */
+    public long getLong(int i) {
+        int off = offset(i);
+        return ((long) readInt(off) << 32) | (readInt(off + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the value of the ith field, which must be a DOUBLE_TYPE field.
+     */
+    public double getDouble(int i) {
+        return Double.longBitsToDouble(getLong(i));
+    }
+
+    /**
+     * Sets the value of the ith field, which must be an INT_TYPE field.
+     */
+    public void setInt(int i, int value) {
+        checkType(i, Type.INT_TYPE);
+        writeInt(offset(i), value);
+        data[i >> 3] |= 1 << (i & 7);
+    }
+
+    /**
+     * @return the value of the ith field, which must be a STRING_TYPE field.
+     */
+    public String getString(int i) {
+        return new String(data, offset(i) + 4, stringLength(i), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Sets the value of the ith field, which must be a STRING_TYPE field.
+     * Strings longer than the field's declared length (see
+     * {@link TupleDesc#getStringLength}) are truncated.
+     *
+     * @throws IllegalArgumentException
+     *            if the string has characters outside ISO-8859-1
+     */
+    public void setString(int i, String value) {
+        checkType(i, Type.STRING_TYPE);
+        int maxLen = tupleDesc.getStringLength(i);
+        int len = Math.min(value.length(), maxLen);
+        int off = offset(i) + 4;
+        StringField.encode(value, len, data, off);
+        Arrays.fill(data, off + len, off + maxLen, (byte) 0);
+        writeInt(off - 4, len);
+        data[i >> 3] |= 1 << (i & 7);
+    }
+
+    /**
+     * Copies the serialized ith field from src, which holds it in the
+     * on-disk format of its type, and marks the field as set.
+     */
+    void setFieldBytes(int i, byte[] src, int srcOffset) {
+        System.arraycopy(src, srcOffset, data, offset(i), tupleDesc.getFieldLength(i));
+        data[i >> 3] |= 1 << (i & 7);
+    }
+
+    /**
+     * Copies the ith field, in the on-disk format of its type, to dest.
+     *
+     * @return false if the field has not been set
+     */
+    boolean getFieldBytes(int i, byte[] dest, int destOffset) {
+        if (!isFieldSet(i)) {
+            return false;
+        }
+        System.arraycopy(data, offset(i), dest, destOffset, tupleDesc.getFieldLength(i));
+        return true;
+    }
+
+    /**
+     * @return the number of characters of the ith field, which must be a
+     *         STRING_TYPE field.
+     */
+    int stringLength(int i) {
+        return Math.max(0, Math.min(readInt(offset(i)), tupleDesc.getStringLength(i)));
+    }
+
+    /**
+     * Copies the characters of the ith field, which must be a STRING_TYPE
+     * field, to dest, one byte each.
+     *
+     * @return the number of bytes copied
+     */
+    int copyStringBytes(int i, byte[] dest, int destOffset) {
+        int len = stringLength(i);
+        System.arraycopy(data, offset(i) + 4, dest, destOffset, len);
+        return len;
+    }
+
+    /**
+     * Returns a new tuple that holds the given fields of this tuple, copied
+     * in their serialized form, and the same RecordId.
+     *
+     * @param fields the indexes of the fields to keep, in order
+     * @param td the schema of the new tuple, as returned by
+     *            {@link TupleDesc#project}
+     */
+    public Tuple project(int[] fields, TupleDesc td) {
+        Tuple t = new Tuple(td);
+        for (int k = 0; k < fields.length; k++) {
+            if (isFieldSet(fields[k])) {
+                t.setFieldBytes(k, data, offset(fields[k]));
+            }
+        }
+        t.setRecordId(recordId);
+        return t;
     }
 
     /**
@@ -95,11 +255,11 @@ public class Tuple implements Serializable {
     public String toString() {
 //        throw new UnsupportedOperationException("Implement this");
         StringBuffer rows = new StringBuffer();
-        for (int i = 0; i < fields.length; i ++){
-            if (i== fields.length - 1){
-                rows.append(fields[i].toString() + "\n");
+        for (int i = 0; i < numFields; i ++){
+            if (i== numFields - 1){
+                rows.append(getField(i) + "\n");
             } else {
-                rows.append(fields[i].toString() + "\t");
+                rows.append(getField(i) + "\t");
             }
         }
         return rows.toString();
@@ -120,19 +280,47 @@ public class Tuple implements Serializable {
     public void resetTupleDesc(TupleDesc td)
     {
         tupleDesc = td;
-        fields = new Field[td.numFields()];
+        numFields = td.numFields();
+        data = new byte[bitmapSize() + td.getSize()];
+    }
 
-        for (int i = 0; i < td.numFields(); i ++){
-            fields[i] = null;
-        }
+    private boolean isValid(int index){
+        return (index >= 0 && index < numFields);
+    }
 
+    /**
+     * @return true if the ith field has been set.
+     */
+    boolean isFieldSet(int i) {
+        return (data[i >> 3] & (1 << (i & 7))) != 0;
     }
 
-    private boolean isValid(int index){
-        if (fields != null){
-            return (index >= 0 && index < fields.length);
-        } else {
-            return false;
+    private int readInt(int off) {
+        return ((data[off] & 0xFF) << 24) | ((data[off + 1] & 0xFF) << 16)
+                | ((data[off + 2] & 0xFF) << 8) | (data[off + 3] & 0xFF);
+    }
+
+    private void writeInt(int off, int value) {
+        data[off] = (byte) (value >>> 24);
+        data[off + 1] = (byte) (value >>> 16);
+        data[off + 2] = (byte) (value >>> 8);
+        data[off + 3] = (byte) value;
+    }
+
+    private int bitmapSize() {
+        return (numFields + 7) / 8;
+    }
+
+    private int offset(int i) {
+        return bitmapSize() + tupleDesc.getFieldOffset(i);
+    }
+
+    private void checkType(int i, Type type) {
+        if (!isValid(i)) {
+            throw new NoSuchElementException("invalid index");
+        }
+        if (tupleDesc.getFieldType(i) != type) {
+            throw new IllegalArgumentException("field " + i + " is not of type " + type);
         }
     }
 
@@ -142,7 +330,7 @@ public class Tuple implements Serializable {
 
         @Override
         public boolean hasNext() {
-            return fields.length > pos;
+            return numFields > pos;
         }
 
         @Override
@@ -150,7 +338,7 @@ public class Tuple implements Serializable {
             if (!hasNext()){
                 throw new NoSuchElementException("No fields!");
             }
-            return fields[pos++];
+            return getField(pos++);
         }
     }
 }
@@ -0,0 +1,301 @@
+package simpledb;
+
+import java.util.Arrays;
+
+/**
+ * TupleBatch holds up to a fixed number of rows of a TupleDesc column by
+ * column, so that operators can process many rows per call in tight loops
+ * over primitive arrays instead of calling next() and decoding a Tuple per
+ * row.
+ * <p>
+ * Each column is stored in an array of the type that fits its values:
+ * INT_TYPE columns in an int[] (see {@link #getIntColumn}), LONG_TYPE,
+ * DATE_TYPE and TIMESTAMP_TYPE columns in a long[], DOUBLE_TYPE columns in a
+ * double[] and STRING_TYPE columns as Fields.
+ * <p>
+ * A selection vector lists the rows of the batch that are still live, in
+ * order: filters narrow a batch by rewriting the first entries of
+ * {@link #getSelection} and calling {@link #setNumSelected}, and consumers
+ * only look at the selected rows.
+ *
+ * @see BatchIterator
+ */
+public class TupleBatch {
+
+    /** The number of rows a batch holds unless asked otherwise. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final TupleDesc td;
+    private final int capacity;
+
+    // one array per column, of the kind that fits the column's type
+    private final int[][] ints;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final Field[][] fields;
+
+    // where each row came from; the record id is built on demand
+    private final HeapPageId[] pageIds;
+    private final int[] slots;
+
+    private final int[] selection;
+    private int size;
+    private int numSelected;
+
+    /**
+     * Creates an empty batch of rows of the given schema.
+     *
+     * @param td the schema of the rows
+     * @param capacity the maximum number of rows
+     */
+    public TupleBatch(TupleDesc td, int capacity) {
+        this.td = td;
+        this.capacity = capacity;
+        int n = td.numFields();
+        ints = new int[n][];
+        longs = new long[n][];
+        doubles = new double[n][];
+        fields = new Field[n][];
+        for (int j = 0; j < n; j++) {
+            Type type = td.getFieldType(j);
+            if (type == Type.INT_TYPE) {
+                ints[j] = new int[capacity];
+            } else if (isLong(type)) {
+                longs[j] = new long[capacity];
+            } else if (type == Type.DOUBLE_TYPE) {
+                doubles[j] = new double[capacity];
+            } else {
+                fields[j] = new Field[capacity];
+            }
+        }
+        pageIds = new HeapPageId[capacity];
+        slots = new int[capacity];
+        selection = new int[capacity];
+    }
+
+    public TupleBatch(TupleDesc td) {
+        this(td, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @return the schema of the rows of this batch.
+     */
+    public TupleDesc getTupleDesc() {
+        return td;
+    }
+
+    /**
+     * @return the maximum number of rows of this batch.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of rows in this batch, selected or not.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if no more rows can be added.
+     */
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Removes all rows from this batch.
+     */
+    public void clear() {
+        size = 0;
+        numSelected = 0;
+        Arrays.fill(pageIds, null);
+    }
+
+    /**
+     * Adds a row to this batch and selects it. Its values must then be set
+     * with the setters.
+     *
+     * @param pid the page the row comes from, or null
+     * @param slot the slot of the row on its page
+     * @return the index of the new row
+     */
+    public int addRow(HeapPageId pid, int slot) {
+        if (size == capacity) {
+            throw new IllegalStateException("the batch is full");
+        }
+        int row = size++;
+        pageIds[row] = pid;
+        slots[row] = slot;
+        selection[numSelected++] = row;
+        return row;
+    }
+
+    /**
+     * Adds the values of a tuple as a new row of this batch.
+     *
+     * @return the index of the new row
+     */
+    public int addTuple(Tuple t) {
+        RecordId rid = t.getRecordId();
+        int row = rid != null && rid.getPageId() instanceof HeapPageId
+                ? addRow((HeapPageId) rid.getPageId(), rid.tupleno()) : addRow(null, -1);
+        for (int j = 0; j < td.numFields(); j++) {
+            setField(j, row, t.getField(j));
+        }
+        return row;
+    }
+
+    /**
+     * @return the selection vector: its first {@link #numSelected} entries
+     *         are the indexes of the selected rows, in increasing order.
+     */
+    public int[] getSelection() {
+        return selection;
+    }
+
+    /**
+     * @return the number of selected rows.
+     */
+    public int numSelected() {
+        return numSelected;
+    }
+
+    /**
+     * Keeps only the first n entries of the selection vector.
+     */
+    public void setNumSelected(int n) {
+        if (n < 0 || n > numSelected) {
+            throw new IllegalArgumentException("cannot select " + n + " of " + numSelected + " rows");
+        }
+        numSelected = n;
+    }
+
+    /**
+     * @return the values of an INT_TYPE column, indexed by row.
+     */
+    public int[] getIntColumn(int col) {
+        return checkColumn(ints, col);
+    }
+
+    /**
+     * @return the values of a LONG_TYPE, DATE_TYPE or TIMESTAMP_TYPE column,
+     *         indexed by row.
+     */
+    public long[] getLongColumn(int col) {
+        return checkColumn(longs, col);
+    }
+
+    /**
+     * @return the values of a DOUBLE_TYPE column, indexed by row.
+     */
+    public double[] getDoubleColumn(int col) {
+        return checkColumn(doubles, col);
+    }
+
+    public int getInt(int col, int row) {
+        return ints[col][row];
+    }
+
+    public void setInt(int col, int row, int value) {
+        ints[col][row] = value;
+    }
+
+    public long getLong(int col, int row) {
+        return longs[col][row];
+    }
+
+    public void setLong(int col, int row, long value) {
+        longs[col][row] = value;
+    }
+
+    public double getDouble(int col, int row) {
+        return doubles[col][row];
+    }
+
+    public void setDouble(int col, int row, double value) {
+        doubles[col][row] = value;
+    }
+
+    /**
+     * @return the value of a column of a row as a Field.
+     */
+    public Field getField(int col, int row) {
+        Type type = td.getFieldType(col);
+        if (type == Type.INT_TYPE) {
+            return new IntField(ints[col][row]);
+        } else if (type == Type.LONG_TYPE) {
+            return new LongField(longs[col][row]);
+        } else if (type == Type.DATE_TYPE) {
+            return new DateField(longs[col][row]);
+        } else if (type == Type.TIMESTAMP_TYPE) {
+            return new TimestampField(longs[col][row]);
+        } else if (type == Type.DOUBLE_TYPE) {
+            return new DoubleField(doubles[col][row]);
+        }
+        return fields[col][row];
+    }
+
+    /**
+     * Sets the value of a column of a row from a Field of the column's type.
+     */
+    public void setField(int col, int row, Field f) {
+        if (f instanceof IntField) {
+            ints[col][row] = ((IntField) f).getValue();
+        } else if (f instanceof LongField) {
+            longs[col][row] = ((LongField) f).getValue();
+        } else if (f instanceof DateField) {
+            longs[col][row] = ((DateField) f).getValue();
+        } else if (f instanceof TimestampField) {
+            longs[col][row] = ((TimestampField) f).getValue();
+        } else if (f instanceof DoubleField) {
+            doubles[col][row] = ((DoubleField) f).getValue();
+        } else {
+            fields[col][row] = f;
+        }
+    }
+
+    /**
+     * @return the record id of a row, or null if the row does not come from
+     *         a page.
+     */
+    public RecordId getRecordId(int row) {
+        return pageIds[row] == null ? null : new RecordId(pageIds[row], slots[row]);
+    }
+
+    /**
+     * @return the slot a row was read from.
+     */
+    int getSlot(int row) {
+        return slots[row];
+    }
+
+    /**
+     * @return a new Tuple with the values of a row.
+     */
+    public Tuple getTuple(int row) {
+        Tuple t = new Tuple(td);
+        for (int j = 0; j < td.numFields(); j++) {
+            if (ints[j] != null) {
+                t.setInt(j, ints[j][row]);
+            } else {
+                t.setField(j, getField(j, row));
+            }
+        }
+        t.setRecordId(getRecordId(row));
+        return t;
+    }
+
+    private static boolean isLong(Type type) {
+        return type == Type.LONG_TYPE || type == Type.DATE_TYPE || type == Type.TIMESTAMP_TYPE;
+    }
+
+    private <T> T checkColumn(T[] columns, int col) {
+        if (columns[col] == null) {
+            throw new IllegalArgumentException("column " + col + " is of type " + td.getFieldType(col));
+        }
+        return columns[col];
+    }
+}
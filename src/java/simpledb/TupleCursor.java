@@ -0,0 +1,63 @@
+package simpledb;
+
+/**
+ * TupleCursor is a forward-only view of a sequence of tuples that reads
+ * field values in place instead of materializing a Tuple per row. A cursor
+ * starts before the first tuple; each call to {@link #advance} moves it to
+ * the next one, and the accessors read the tuple it is positioned on.
+ * <p>
+ * The accessors other than {@link #getField}, {@link #getRecordId} and
+ * {@link #getTuple} do not allocate (beyond the String returned by
+ * {@link #getString}), so a scan that only needs a few columns runs without
+ * per-row garbage. Values read from a cursor are only valid until the next
+ * call to advance.
+ *
+ * @see HeapFile#cursor
+ * @see SeqScan#cursor
+ */
+public interface TupleCursor {
+
+    /**
+     * Moves to the next tuple.
+     *
+     * @return true if the cursor is on a tuple, false if there are no more
+     */
+    public boolean advance() throws DbException, TransactionAbortedException;
+
+    /**
+     * @return the value of the given field, which must be an INT_TYPE field.
+     */
+    public int getInt(int field);
+
+    /**
+     * @return the value of the given field, which must be a LONG_TYPE,
+     *         DATE_TYPE or TIMESTAMP_TYPE field: the number, the day or the
+     *         millisecond since the epoch.
+     */
+    public long getLong(int field);
+
+    /**
+     * @return the value of the given field, which must be a DOUBLE_TYPE field.
+     */
+    public double getDouble(int field);
+
+    /**
+     * @return the value of the given field, which must be a STRING_TYPE field.
+     */
+    public String getString(int field);
+
+    /**
+     * @return the given field of the current tuple as a Field object.
+     */
+    public Field getField(int field);
+
+    /**
+     * @return the RecordId of the current tuple.
+     */
+    public RecordId getRecordId();
+
+    /**
+     * @return the current tuple as a Tuple object.
+     */
+    public Tuple getTuple();
+}
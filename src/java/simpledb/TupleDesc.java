@@ -1,12 +1,18 @@
 package simpledb;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.Iterator;
-import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * TupleDesc describes the schema of a tuple.
+ * <p>
+ * A TupleDesc is immutable. Its tuple size, field offsets and field name
+ * lookup are computed once, when it is constructed. {@link #intern} returns
+ * a canonical instance for each schema, so code that holds interned
+ * TupleDescs can compare them by reference.
  */
 public class TupleDesc implements Serializable {
 
@@ -27,9 +33,45 @@ public class TupleDesc implements Serializable {
          * */
         public final String fieldName;
 
+        /**
+         * The maximum number of characters of a STRING_TYPE field
+         * */
+        public final int stringLength;
+
         public TDItem(Type t, String n) {
+            this(t, n, Type.STRING_LEN);
+        }
+
+        public TDItem(Type t, String n, int stringLength) {
+            if (stringLength <= 0) {
+                throw new IllegalArgumentException("string length must be positive: " + stringLength);
+            }
             this.fieldName = n;
             this.fieldType = t;
+            this.stringLength = stringLength;
+        }
+
+        /**
+         * @return the number of bytes a value of this field takes.
+         */
+        public int getLen() {
+            return fieldType == Type.STRING_TYPE ? stringLength + 4 : fieldType.getLen();
+        }
+
+        /**
+         * Two TDItems are equal if they have the same type, name and length.
+         */
+        public boolean equals(Object o) {
+            if (!(o instanceof TDItem)) {
+                return false;
+            }
+            TDItem other = (TDItem) o;
+            return fieldType == other.fieldType && getLen() == other.getLen()
+                    && Objects.equals(fieldName, other.fieldName);
+        }
+
+        public int hashCode() {
+            return Objects.hash(fieldType.ordinal(), fieldName, getLen());
         }
 
         public String toString() {
@@ -37,7 +79,17 @@ public class TupleDesc implements Serializable {
         }
     }
 
-    private ArrayList<TDItem> item_array;  //create an arraybag of TDItem
+    private final TDItem[] items;
+
+    // derived from items when the TupleDesc is constructed
+    private final int size;
+    private final int[] fieldOffsets;
+    private final Map<String, Integer> nameToIndex;
+    private final int hash;
+
+    // canonical instances, keyed by their fields
+    private static final Map<List<TDItem>, TupleDesc> interned =
+            new ConcurrentHashMap<List<TDItem>, TupleDesc>();
 
     /**
      * @return
@@ -45,9 +97,7 @@ public class TupleDesc implements Serializable {
      *        that are included in this TupleDesc
      * */
     public Iterator<TDItem> iterator(TDItem items) {
-        // some code goes here
-        //return an iterator item of array, used javs's iterator class
-        return item_array.iterator();
+        return Collections.unmodifiableList(Arrays.asList(this.items)).iterator();
     }
 
     private static final long serialVersionUID = 1L;
@@ -64,14 +114,20 @@ public class TupleDesc implements Serializable {
      *            be null.
      */
     public TupleDesc(Type[] typeAr, String[] fieldAr) {
-        // some code goes here
-        //construct the item_array according to the description given
-        int arrlength = typeAr.length;
-        item_array = new ArrayList<TDItem>();  //create an array of tditems with fixed size
-        for (int i=0; i<arrlength; i++) {
-            TDItem x = new TDItem(typeAr[i], fieldAr[i]);
-            item_array.add(x);  //construct the array according to description
-        }
+        this(typeAr, fieldAr, null);
+    }
+
+    /**
+     * Create a new TupleDesc whose STRING_TYPE fields have the given
+     * maximum lengths, declared as string(n) in a schema.
+     *
+     * @param stringLengths
+     *            the maximum number of characters of each string field; other
+     *            entries are ignored. A null array, or an entry of 0, stands
+     *            for {@link Type#STRING_LEN}.
+     */
+    public TupleDesc(Type[] typeAr, String[] fieldAr, int[] stringLengths) {
+        this(items(typeAr, fieldAr, stringLengths));
     }
 
     /**
@@ -83,22 +139,55 @@ public class TupleDesc implements Serializable {
      *            TupleDesc. It must contain at least one entry.
      */
     public TupleDesc(Type[] typeAr) {
-        // some code goes here
         this(typeAr, new String[typeAr.length]);
     }
 
+    private TupleDesc(TDItem[] items) {
+        this.items = items;
+        this.fieldOffsets = new int[items.length];
+        this.nameToIndex = new HashMap<String, Integer>();
+        int offset = 0;
+        int h = 1;
+        for (int i = 0; i < items.length; i++) {
+            fieldOffsets[i] = offset;
+            offset += items[i].getLen();
+            if (items[i].fieldName != null) {
+                nameToIndex.putIfAbsent(items[i].fieldName, i);
+            }
+            // the ordinal, unlike the enum's hashCode, is the same in every JVM
+            h = 31 * (31 * h + items[i].fieldType.ordinal()) + items[i].getLen();
+        }
+        this.size = offset;
+        this.hash = h;
+    }
+
+    private static TDItem[] items(Type[] typeAr, String[] fieldAr, int[] stringLengths) {
+        TDItem[] items = new TDItem[typeAr.length];
+        for (int i = 0; i < items.length; i++) {
+            int len = stringLengths == null || stringLengths[i] == 0 ? Type.STRING_LEN : stringLengths[i];
+            items[i] = new TDItem(typeAr[i], fieldAr[i], len);
+        }
+        return items;
+    }
+
+    /**
+     * Returns the canonical TupleDesc with the same fields (types, names and
+     * lengths) as td. Interned TupleDescs with the same fields are the same
+     * object, so they can be compared with ==.
+     *
+     * @return the canonical instance, which is td itself if it is the first
+     *         to be interned with its fields.
+     */
+    public static TupleDesc intern(TupleDesc td) {
+        TupleDesc canonical = interned.putIfAbsent(Arrays.asList(td.items), td);
+        return canonical == null ? td : canonical;
+    }
+
     /**
      * @return the number of fields in this TupleDesc
      */
     public int numFields() {
-        // some code goes here
-        //the length of the item_array, the tuples, is equal to the fields inside the array,
-        //use size() to get length
-        //System.out.println(item_array + " at numFields");
-        if (item_array == null) {
-            return 0;
-        }
-        return (item_array.size());
+        return items.length;
     }
 
     /**
@@ -111,13 +200,7 @@ public class TupleDesc implements Serializable {
      *             if i is not a valid field reference.
      */
     public String getFieldName(int i) throws NoSuchElementException {
-        // some code goes here
-        try {
-            String result = item_array.get(i).fieldName;  //return the fieldname of ith object
-            return result;
-        } catch (NullPointerException e) {
-            throw new NoSuchElementException();
-        }
+        return item(i).fieldName;
     }
 
     /**
@@ -131,13 +214,38 @@ public class TupleDesc implements Serializable {
      *             if i is not a valid field reference.
      */
     public Type getFieldType(int i) throws NoSuchElementException {
-        // some code goes here
-        try {
-            Type result = item_array.get(i).fieldType;
-            return result;
-        } catch (NullPointerException e) {
-            throw new NoSuchElementException();
+        return item(i).fieldType;
+    }
+
+    /**
+     * Gets the maximum number of characters of the ith field of this
+     * TupleDesc, if it is a STRING_TYPE field.
+     *
+     * @param i
+     *            The index of the field. It must be a valid index.
+     * @return the declared length of the field, {@link Type#STRING_LEN}
+     *         unless declared otherwise.
+     */
+    public int getStringLength(int i) throws NoSuchElementException {
+        return item(i).stringLength;
+    }
+
+    /**
+     * @return the number of bytes a value of the ith field takes on disk.
+     */
+    public int getFieldLength(int i) {
+        return item(i).getLen();
+    }
+
+    /**
+     * Reads the ith field from its on-disk format at the given offset of
+     * the buffer.
+     */
+    public Field parseField(int i, ByteBuffer buf, int offset) {
+        if (getFieldType(i) == Type.STRING_TYPE) {
+            return StringField.parse(buf, offset, getStringLength(i));
         }
+        return getFieldType(i).parse(buf, offset);
     }
 
     /**
@@ -150,26 +258,11 @@ public class TupleDesc implements Serializable {
      *             if no field with a matching name is found.
      */
     public int fieldNameToIndex(String name) throws NoSuchElementException {
-        // some code goes here
-        //System.out.println("name = " + name);
-        //System.out.println("items = " + item_array);
-        //System.out.println("null.equals(test) " + "test".equals(null));
-
-        //go through the entire list using iterator, return index if name found
-        if (item_array == null) {throw new NoSuchElementException();}
-        if (name == null) {throw new NoSuchElementException();}
-        for (int i=0; i<item_array.size();i++) {
-            String name_check = item_array.get(i).fieldName;
-            //System.out.println("name_check = " + name_check);
-            //System.out.println("check: " + (name.equals(name_check)));
-            if (name.equals(name_check)) {
-                //System.out.println("name_check = " + name_check);
-                return i;
-            }
-            //System.out.println(item_array + " size = "+ item_array.size() + " name = " + name + " name_check = " + name_check);
+        Integer i = name == null ? null : nameToIndex.get(name);
+        if (i == null) {
+            throw new NoSuchElementException("no field named " + name);
         }
-        //cannot find the element
-        throw new NoSuchElementException();
+        return i;
     }
 
     /**
@@ -177,17 +270,37 @@ public class TupleDesc implements Serializable {
      *         Note that tuples from a given TupleDesc are of a fixed size.
      */
     public int getSize() {
-        // some code goes here
-        // add all element: length = byte_size *  length
-        //System.out.println(item_array + "at getSize");
-        int length = 0;
-        if (item_array == null) {
-            return 0;
-        }
-        for (int i=0; i<item_array.size(); i++) {
-            length = length + getFieldType(i).getLen();
+        return size;
+    }
+
+    /**
+     * Returns the offset of the ith field in the fixed-size layout of a
+     * tuple, in which the fields follow each other in order and each takes
+     * {@link #getFieldLength} bytes.
+     *
+     * @param i
+     *            index of the field. It must be a valid index.
+     * @return the offset (in bytes) of the ith field.
+     */
+    public int getFieldOffset(int i) {
+        return fieldOffsets[i];
+    }
+
+    /**
+     * Returns a TupleDesc with the given fields of this one, in the given
+     * order, with their names and lengths.
+     *
+     * @param fields
+     *            the indexes of the fields to keep
+     * @throws NoSuchElementException
+     *             if an index is not a valid field reference.
+     */
+    public TupleDesc project(int[] fields) {
+        TDItem[] projected = new TDItem[fields.length];
+        for (int k = 0; k < fields.length; k++) {
+            projected[k] = item(fields[k]);
         }
-        return length;
+        return new TupleDesc(projected);
     }
 
     /**
@@ -201,68 +314,47 @@ public class TupleDesc implements Serializable {
      * @return the new TupleDesc
      */
     public static TupleDesc merge(TupleDesc td1, TupleDesc td2) {
-        // some code goes here
-        //System.out.println("td1 = " + td1.item_array);
-        //System.out.println("td2 = " + td2.item_array);
-
-        // we append each type and each file to seperate array and construct a new array
-        int length = td1.item_array.size() + td2.item_array.size();
-        int length1 = td1.item_array.size();
-        int length2 = td2.item_array.size();
-        Type[] typearray = new Type[length];
-        String[] namearray = new String[length];
-
-        for (int i=0; i<length1; i++) {
-            String x = td1.item_array.get(i).fieldName;
-            Type y = td1.item_array.get(i).fieldType;
-            typearray[i] = y;
-            namearray[i] = x;
-        }
-
-        for (int i=0; i<length2; i++) {
-            String x = td2.item_array.get(i).fieldName;
-            Type y = td2.item_array.get(i).fieldType;
-            typearray[i + length1] = y;
-            namearray[i + length1] = x;
-        }
-
-        //combine all these useing constructor
-        //TupleDesc(typearray,namearray);
-        TupleDesc result = new TupleDesc(typearray,namearray);
-        //System.out.println("result = " + result.item_array);
-        return (result);
+        TDItem[] items = Arrays.copyOf(td1.items, td1.items.length + td2.items.length);
+        System.arraycopy(td2.items, 0, items, td1.items.length, td2.items.length);
+        return new TupleDesc(items);
     }
 
     /**
      * Compares the specified object with this TupleDesc for equality. Two
      * TupleDescs are considered equal if they are the same size and if the n-th
-     * type in this TupleDesc is equal to the n-th type in td.
+     * type in this TupleDesc is equal to the n-th type in td, with the same
+     * length for string types.
      *
      * @param o
      *            the Object to be compared for equality with this TupleDesc.
      * @return true if the object is equal to this TupleDesc.
      */
     public boolean equals(Object o) {
-        // some code goes here
-        //test of o is a tupleDesc
-        //System.out.println("item_array: " + item_array);
-        if (o == null && item_array == null) {return true;}
-        if (!(o instanceof TupleDesc)) { return false; }  // if o is not a ArrayList<TDItem> object
-        if (!(((TupleDesc) o).item_array.size() == item_array.size())) { return false; }
-
-        for (int i=0; i<item_array.size();i++) {
-            if (!(item_array.get(i).fieldType.equals(((TupleDesc) o).item_array.get(i).fieldType))) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TupleDesc)) {
+            return false;
+        }
+        TupleDesc other = (TupleDesc) o;
+        if (other.items.length != items.length || other.hash != hash) {
+            return false;
+        }
+        for (int i = 0; i < items.length; i++) {
+            if (items[i].fieldType != other.items[i].fieldType
+                    || items[i].getLen() != other.items[i].getLen()) {
                 return false;
             }
         }
-
         return true;
     }
 
+    /**
+     * The hash code depends on the types and lengths of the fields, as
+     * {@link #equals} does, but not on their names.
+     */
     public int hashCode() {
-        // If you want to use TupleDesc as keys for HashMap, implement this so
-        // that equal objects have equals hashCode() results
-        throw new UnsupportedOperationException("unimplemented");
+        return hash;
     }
 
     /**
@@ -273,24 +365,18 @@ public class TupleDesc implements Serializable {
      * @return String describing this descriptor.
      */
     public String toString() {
-        // some code goes here
-        String result = "";
-        //System.out.println("item_array = " + item_array);
-        for (int i=0;i<item_array.size();i++) {
-            String s = Integer.toString(i);
-            //System.out.println("s = " + s);
-            //String q = Type.toString(item_array.get(i).fieldType);
-            StringBuilder y = new StringBuilder();
-            y.append((item_array.get(i).fieldType).toString());
-            String q = y.toString();
-
-            //System.out.println("q = " + q);
-
-            result = result + q + "[" + s + "]";
-            result = result + (item_array.get(i).fieldName) + "[" + s + "]";
-            //System.out.println("result22 = " + result);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < items.length; i++) {
+            result.append(items[i].fieldType).append("[").append(i).append("]");
+            result.append(items[i].fieldName).append("[").append(i).append("]");
+        }
+        return result.toString();
+    }
+
+    private TDItem item(int i) {
+        if (i < 0 || i >= items.length) {
+            throw new NoSuchElementException("invalid field index " + i);
         }
-        //System.out.println("result22 = " + result);
-        return result;
+        return items[i];
     }
 }
@@ -0,0 +1,51 @@
+package simpledb;
+
+import java.util.Iterator;
+
+/**
+ * TuplePage is the interface implemented by the pages of a HeapFile. It
+ * lets HeapFile insert, delete and scan tuples without knowing how a page
+ * lays them out.
+ *
+ * @see HeapPage
+ * @see SlottedHeapPage
+ * @see PageFormat
+ */
+public interface TuplePage extends Page {
+
+    /**
+     * @return true if the tuple can be inserted into this page.
+     */
+    public boolean hasRoomFor(Tuple t);
+
+    /**
+     * @return true if no tuples are stored on this page.
+     */
+    public boolean isEmpty();
+
+    /**
+     * Adds the specified tuple to the page and sets its RecordId.
+     *
+     * @throws DbException if the page has no room for the tuple or its
+     *         TupleDesc does not match the page's.
+     */
+    public void insertTuple(Tuple t) throws DbException;
+
+    /**
+     * Deletes the specified tuple from the page.
+     *
+     * @throws DbException if the tuple is not stored on this page.
+     */
+    public void deleteTuple(Tuple t) throws DbException;
+
+    /**
+     * @return an iterator over the tuples stored on this page.
+     */
+    public Iterator<Tuple> iterator();
+
+    /**
+     * @return a cursor over the tuples stored on this page that reads them
+     *         straight from the page data.
+     */
+    public TupleCursor cursor();
+}
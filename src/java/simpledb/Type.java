@@ -2,6 +2,7 @@ package simpledb;
 
 import java.text.ParseException;
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * Class representing a type in SimpleDB.
@@ -24,6 +25,16 @@ public enum Type implements Serializable {
             }
         }
 
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            return new IntField(buf.getInt(offset));
+        }
+
+        @Override
+        public Field parse(String text) {
+            return new IntField(Integer.parseInt(text.trim()));
+        }
+
     }, STRING_TYPE() {
         @Override
         public int getLen() {
@@ -33,21 +44,129 @@ public enum Type implements Serializable {
         @Override
         public Field parse(DataInputStream dis) throws ParseException {
             try {
-                int strLen = dis.readInt();
-                byte bs[] = new byte[strLen];
-                dis.read(bs);
-                dis.skipBytes(STRING_LEN-strLen);
-                return new StringField(new String(bs), STRING_LEN);
+                return StringField.parse(dis, STRING_LEN);
             } catch (IOException e) {
                 throw new ParseException("couldn't parse", 0);
             }
         }
+
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            return StringField.parse(buf, offset, STRING_LEN);
+        }
+
+        @Override
+        public Field parse(String text) {
+            return new StringField(text.trim(), STRING_LEN);
+        }
+
+    }, LONG_TYPE() {
+        @Override
+        public int getLen() {
+            return 8;
+        }
+
+        @Override
+        public Field parse(DataInputStream dis) throws ParseException {
+            try {
+                return new LongField(dis.readLong());
+            }  catch (IOException e) {
+                throw new ParseException("couldn't parse", 0);
+            }
+        }
+
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            return new LongField(buf.getLong(offset));
+        }
+
+        @Override
+        public Field parse(String text) {
+            return new LongField(Long.parseLong(text.trim()));
+        }
+
+    }, DOUBLE_TYPE() {
+        @Override
+        public int getLen() {
+            return 8;
+        }
+
+        @Override
+        public Field parse(DataInputStream dis) throws ParseException {
+            try {
+                return new DoubleField(dis.readDouble());
+            }  catch (IOException e) {
+                throw new ParseException("couldn't parse", 0);
+            }
+        }
+
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            return new DoubleField(buf.getDouble(offset));
+        }
+
+        @Override
+        public Field parse(String text) {
+            return new DoubleField(Double.parseDouble(text.trim()));
+        }
+
+    }, DATE_TYPE() {
+        @Override
+        public int getLen() {
+            return 8;
+        }
+
+        @Override
+        public Field parse(DataInputStream dis) throws ParseException {
+            try {
+                return new DateField(dis.readLong());
+            }  catch (IOException e) {
+                throw new ParseException("couldn't parse", 0);
+            }
+        }
+
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            return new DateField(buf.getLong(offset));
+        }
+
+        @Override
+        public Field parse(String text) {
+            return DateField.valueOf(text.trim());
+        }
+
+    }, TIMESTAMP_TYPE() {
+        @Override
+        public int getLen() {
+            return 8;
+        }
+
+        @Override
+        public Field parse(DataInputStream dis) throws ParseException {
+            try {
+                return new TimestampField(dis.readLong());
+            }  catch (IOException e) {
+                throw new ParseException("couldn't parse", 0);
+            }
+        }
+
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            return new TimestampField(buf.getLong(offset));
+        }
+
+        @Override
+        public Field parse(String text) {
+            return TimestampField.valueOf(text.trim());
+        }
     };
     
     public static final int STRING_LEN = 128;
 
   /**
-   * @return the number of bytes required to store a field of this type.
+   * @return the number of bytes required to store a field of this type; for
+   *   STRING_TYPE, a string of the default length {@link #STRING_LEN}. See
+   *   {@link TupleDesc#getFieldLength} for the length of a given column.
    */
     public abstract int getLen();
 
@@ -60,4 +179,78 @@ public enum Type implements Serializable {
    */
     public abstract Field parse(DataInputStream dis) throws ParseException;
 
+  /**
+   * @return a Field object of the same type as this object that has contents
+   *   read from the specified buffer at the given absolute offset. The
+   *   buffer's position is left unchanged.
+   * @param buf The buffer to read from
+   * @param offset The offset of the first byte of the field
+   */
+    public abstract Field parse(ByteBuffer buf, int offset);
+
+  /**
+   * @return a Field object of the same type as this object that holds the
+   *   value written in the given text, e.g. a line of a data file.
+   * @param text The text to parse
+   * @throws IllegalArgumentException if the text is not a valid value of
+   *   this type.
+   */
+    public abstract Field parse(String text);
+
+  /**
+   * Returns the type named by a schema keyword: "int", "string", "long",
+   * "double", "date" or "timestamp", in any case. A string type may declare
+   * its maximum length as "string(n)"; see {@link #stringLength}.
+   *
+   * @return the type, or null if the keyword is not a type name.
+   */
+    public static Type forName(String name) {
+        name = name.trim().toLowerCase();
+        if (name.startsWith("string(")) {
+            return STRING_TYPE;
+        }
+        switch (name) {
+        case "int":
+            return INT_TYPE;
+        case "string":
+            return STRING_TYPE;
+        case "long":
+            return LONG_TYPE;
+        case "double":
+            return DOUBLE_TYPE;
+        case "date":
+            return DATE_TYPE;
+        case "timestamp":
+            return TIMESTAMP_TYPE;
+        }
+        return null;
+    }
+
+  /**
+   * Returns the maximum string length declared by a "string(n)" schema
+   * keyword.
+   *
+   * @return n, or {@link #STRING_LEN} if the keyword declares no length.
+   * @throws IllegalArgumentException if the declared length is not a
+   *   positive number.
+   */
+    public static int stringLength(String name) {
+        name = name.trim();
+        int open = name.indexOf('(');
+        if (open < 0) {
+            return STRING_LEN;
+        }
+        int close = name.indexOf(')', open);
+        int len;
+        try {
+            len = Integer.parseInt(name.substring(open + 1, close < 0 ? name.length() : close).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid string length: " + name);
+        }
+        if (close < 0 || len <= 0) {
+            throw new IllegalArgumentException("invalid string length: " + name);
+        }
+        return len;
+    }
+
 }
@@ -0,0 +1,145 @@
+package simpledb;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Vacuum compacts a HeapFile online, in the background. It repeatedly runs
+ * small {@link HeapFile#compact} steps on a daemon thread, each visiting a
+ * bounded number of pages, and sleeps between steps so that compaction does
+ * not read or write more than a given number of pages per second.
+ * <p>
+ * Tuples moved by the vacuum get new RecordIds; an optional listener is told
+ * about every relocation.
+ */
+public class Vacuum {
+
+    /** Receives the old and new RecordId of every tuple the vacuum moves. */
+    public interface RelocationListener {
+        void relocated(RecordId from, RecordId to);
+    }
+
+    /** Length of one compaction step, in milliseconds. */
+    private static final long STEP_MILLIS = 100;
+
+    private final HeapFile file;
+    private final int pagesPerStep;
+    private final RelocationListener listener;
+
+    private Thread worker;
+    private volatile boolean stopped;
+    private volatile boolean done;
+    private volatile Exception error;
+
+    /**
+     * Creates a vacuum for the specified file.
+     *
+     * @param file the file to compact
+     * @param pagesPerSecond the maximum number of pages to visit per second
+     */
+    public Vacuum(HeapFile file, int pagesPerSecond) {
+        this(file, pagesPerSecond, null);
+    }
+
+    /**
+     * Creates a vacuum for the specified file that reports every tuple it
+     * moves to the given listener.
+     *
+     * @param file the file to compact
+     * @param pagesPerSecond the maximum number of pages to visit per second
+     * @param listener told about relocated tuples; may be null
+     */
+    public Vacuum(HeapFile file, int pagesPerSecond, RelocationListener listener) {
+        this.file = file;
+        this.pagesPerStep = Math.max(1, (int) (pagesPerSecond * STEP_MILLIS / 1000));
+        this.listener = listener;
+    }
+
+    /** Starts compacting in the background. */
+    public synchronized void start() {
+        if (worker != null) {
+            throw new IllegalStateException("Vacuum: already started");
+        }
+        worker = new Thread(new Runnable() {
+            public void run() {
+                runSteps();
+            }
+        }, "vacuum-" + file.getId());
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Stops the vacuum after its current step and waits for it to exit. */
+    public void stop() throws InterruptedException {
+        stopped = true;
+        Thread t;
+        synchronized (this) {
+            t = worker;
+        }
+        if (t != null) {
+            t.join();
+        }
+    }
+
+    /**
+     * Waits for the file to be fully compacted.
+     *
+     * @param timeoutMillis the maximum time to wait
+     * @return true if compaction finished, false on timeout or error
+     */
+    public boolean awaitCompletion(long timeoutMillis) throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            t = worker;
+        }
+        if (t != null) {
+            t.join(timeoutMillis);
+        }
+        return done;
+    }
+
+    /** @return true once the file has been fully compacted. */
+    public boolean isDone() {
+        return done;
+    }
+
+    /** @return the exception that stopped the vacuum, or null. */
+    public Exception getError() {
+        return error;
+    }
+
+    private void runSteps() {
+        Map<RecordId, RecordId> relocated = new HashMap<RecordId, RecordId>();
+        try {
+            while (!stopped && !done) {
+                long start = System.currentTimeMillis();
+                TransactionId tid = new TransactionId();
+                try {
+                    done = file.compact(tid, pagesPerStep, relocated);
+                    // the BufferPool does not commit transactions, so the
+                    // step writes back the pages it changed itself
+                    Database.getBufferPool().flushPages(tid);
+                } finally {
+                    Database.getBufferPool().transactionComplete(tid);
+                }
+                if (listener != null) {
+                    for (Map.Entry<RecordId, RecordId> e : relocated.entrySet()) {
+                        listener.relocated(e.getKey(), e.getValue());
+                    }
+                }
+                relocated.clear();
+
+                long left = STEP_MILLIS - (System.currentTimeMillis() - start);
+                if (!done && left > 0) {
+                    Thread.sleep(left);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (DbException | IOException | TransactionAbortedException e) {
+            error = e;
+            Debug.log("Vacuum: compaction of table %d failed: %s", file.getId(), e);
+        }
+    }
+}
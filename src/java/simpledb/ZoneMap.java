@@ -0,0 +1,328 @@
+package simpledb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * ZoneMap keeps a summary of every page of a HeapFile: the number of tuples
+ * on the page and the minimum and maximum value of each INT_TYPE column.
+ * Scans with a {@link Predicate} consult it to skip pages that cannot hold
+ * a matching tuple without reading them.
+ * <p>
+ * A page's summary is computed whenever the page is read from or written
+ * to disk, and widened when a tuple is inserted into it, so it always
+ * covers the page's current contents. It has two limits:
+ * <ul>
+ * <li>Only INT_TYPE columns are summarized. A predicate on any other
+ * column, or with a non-IntField operand, never skips a page.</li>
+ * <li>Deletes do not narrow a summary. After a delete the summary can be
+ * wider than the page, and its count too high, until the page is next
+ * written. That only costs skips, never results.</li>
+ * </ul>
+ * Pages that have not been seen yet have no summary and are never skipped.
+ * SimpleDB fields cannot be null, so no null counts are kept.
+ * <p>
+ * The summaries of a file are saved in a sidecar file, one fixed-size
+ * record per page after a header holding the number of columns. A record
+ * is rewritten whenever its page is written, right after the page, so a
+ * sidecar older than the newest page write may have missed it. Such a
+ * sidecar, or one for another number of columns, is ignored and rebuilt as
+ * pages are read and written. Summaries computed by reads are only kept in
+ * memory: saving them would make a sidecar that missed a write look newer
+ * than it.
+ *
+ * @see HeapFile#iterator(TransactionId, Predicate)
+ */
+public class ZoneMap {
+
+    /** The summary of one page. */
+    private static class Zone {
+        int count;
+        final int[] min;
+        final int[] max;
+
+        Zone(int columns) {
+            min = new int[columns];
+            max = new int[columns];
+            Arrays.fill(min, Integer.MAX_VALUE);
+            Arrays.fill(max, Integer.MIN_VALUE);
+        }
+
+        void add(int column, int value) {
+            min[column] = Math.min(min[column], value);
+            max[column] = Math.max(max[column], value);
+        }
+    }
+
+    private static final int HEADER_BYTES = 4;
+
+    private final TupleDesc td;
+    // page number -> summary; null when the page has not been seen
+    private final ArrayList<Zone> zones = new ArrayList<Zone>();
+    // the sidecar, or null for a zone map that is only kept in memory
+    private final File sidecar;
+    // opened on first save, guarded by this
+    private FileChannel channel;
+    // true once the sidecar is known to match td, so records can be written
+    private boolean valid;
+
+    /**
+     * Creates an empty zone map for a file with the given schema that is
+     * only kept in memory.
+     */
+    public ZoneMap(TupleDesc td) {
+        this.td = td;
+        this.sidecar = null;
+    }
+
+    /**
+     * Creates a zone map saved in the given sidecar, loading the summaries
+     * already in it if it is usable for the given data file.
+     *
+     * @param sidecar the file the summaries are saved in
+     * @param dataModified the time the pages were last written; an older
+     *            sidecar is not used
+     */
+    public ZoneMap(TupleDesc td, File sidecar, long dataModified) {
+        this.td = td;
+        this.sidecar = sidecar;
+        if (sidecar.exists() && sidecar.lastModified() >= dataModified) {
+            try {
+                load();
+            } catch (IOException e) {
+                // the summaries are only hints; start over
+                zones.clear();
+            }
+        }
+    }
+
+    private int recordBytes() {
+        return 4 + 8 * td.numFields();
+    }
+
+    private void load() throws IOException {
+        byte[] bytes = java.nio.file.Files.readAllBytes(sidecar.toPath());
+        if (bytes.length < HEADER_BYTES) {
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        if (buf.getInt(0) != td.numFields()) {
+            return;
+        }
+        int pages = (bytes.length - HEADER_BYTES) / recordBytes();
+        for (int pageNo = 0; pageNo < pages; pageNo++) {
+            int offset = HEADER_BYTES + pageNo * recordBytes();
+            // the count is stored plus one, so that the zeroes of a gap in
+            // the file read as unsummarized pages
+            int count = buf.getInt(offset) - 1;
+            Zone zone = null;
+            if (count >= 0) {
+                zone = new Zone(td.numFields());
+                zone.count = count;
+                for (int j = 0; j < td.numFields(); j++) {
+                    zone.min[j] = buf.getInt(offset + 4 + 8 * j);
+                    zone.max[j] = buf.getInt(offset + 8 + 8 * j);
+                }
+            }
+            zones.add(zone);
+        }
+        valid = true;
+    }
+
+    /**
+     * Writes the summary of a page to the sidecar, starting the sidecar over
+     * if it was not usable.
+     */
+    private void save(int pageNo, Zone zone) throws IOException {
+        if (sidecar == null) {
+            return;
+        }
+        openChannel();
+        if (!valid) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(0, td.numFields());
+            write(header, 0);
+            // summaries computed before the sidecar was usable
+            for (int p = 0; p < zones.size(); p++) {
+                if (p != pageNo && zones.get(p) != null) {
+                    write(encode(zones.get(p)), HEADER_BYTES + (long) p * recordBytes());
+                }
+            }
+            valid = true;
+        }
+        write(encode(zone), HEADER_BYTES + (long) pageNo * recordBytes());
+    }
+
+    private void openChannel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(sidecar.toPath(), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        }
+    }
+
+    private ByteBuffer encode(Zone zone) {
+        ByteBuffer buf = ByteBuffer.allocate(recordBytes());
+        if (zone != null) {
+            buf.putInt(0, zone.count + 1);
+            for (int j = 0; j < td.numFields(); j++) {
+                buf.putInt(4 + 8 * j, zone.min[j]);
+                buf.putInt(8 + 8 * j, zone.max[j]);
+            }
+        }
+        return buf;
+    }
+
+    private void write(ByteBuffer buf, long offset) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf, offset + buf.position());
+        }
+    }
+
+    /**
+     * Closes the sidecar.
+     */
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing is buffered, so there is nothing to lose
+            }
+        }
+    }
+
+    /**
+     * Recomputes the summary of a page from its contents.
+     *
+     * @param written true if the page was just written to disk, in which
+     *            case the summary is saved so that the sidecar stays newer
+     *            than the file; false if it was read, in which case it is
+     *            only kept in memory
+     */
+    public void update(int pageNo, TuplePage page, boolean written) throws IOException {
+        Zone zone = new Zone(td.numFields());
+        TupleCursor cursor = page.cursor();
+        try {
+            while (cursor.advance()) {
+                zone.count++;
+                for (int j = 0; j < td.numFields(); j++) {
+                    if (td.getFieldType(j) == Type.INT_TYPE) {
+                        zone.add(j, cursor.getInt(j));
+                    }
+                }
+            }
+        } catch (DbException | TransactionAbortedException e) {
+            // page cursors do not fetch pages; keep the page unsummarized
+            zone = null;
+        }
+        set(pageNo, zone, written);
+    }
+
+    /**
+     * Widens the summary of a page to cover a tuple inserted into it.
+     */
+    public synchronized void add(int pageNo, Tuple t) {
+        Zone zone = pageNo < zones.size() ? zones.get(pageNo) : null;
+        if (zone == null) {
+            return;
+        }
+        zone.count++;
+        for (int j = 0; j < td.numFields(); j++) {
+            if (td.getFieldType(j) == Type.INT_TYPE) {
+                zone.add(j, ((IntField) t.getField(j)).getValue());
+            }
+        }
+    }
+
+    /**
+     * Forgets the summaries of all pages from the given page on.
+     */
+    public synchronized void truncate(int pages) throws IOException {
+        while (zones.size() > pages) {
+            zones.remove(zones.size() - 1);
+        }
+        if (sidecar != null && valid) {
+            openChannel();
+            channel.truncate(HEADER_BYTES + (long) pages * recordBytes());
+        }
+    }
+
+    /**
+     * Forgets the summaries of the pages from from up to, but not including,
+     * to, e.g. because their contents were dropped.
+     */
+    public synchronized void clear(int from, int to) throws IOException {
+        for (int pageNo = from; pageNo < Math.min(to, zones.size()); pageNo++) {
+            zones.set(pageNo, null);
+        }
+        if (sidecar != null && valid) {
+            openChannel();
+            long end = Math.min(channel.size(), HEADER_BYTES + (long) to * recordBytes());
+            for (long offset = HEADER_BYTES + (long) from * recordBytes(); offset < end; offset += recordBytes()) {
+                write(encode(null), offset);
+            }
+        }
+    }
+
+    /**
+     * @return the number of tuples on the page, or -1 if the page has not
+     *         been summarized.
+     */
+    public synchronized int getCount(int pageNo) {
+        Zone zone = pageNo < zones.size() ? zones.get(pageNo) : null;
+        return zone == null ? -1 : zone.count;
+    }
+
+    /**
+     * Returns false if no tuple on the page can satisfy the predicate, and
+     * true if some may or the page has not been summarized.
+     */
+    public synchronized boolean mightMatch(int pageNo, Predicate p) {
+        Zone zone = pageNo < zones.size() ? zones.get(pageNo) : null;
+        if (zone == null) {
+            return true;
+        }
+        if (zone.count == 0) {
+            return false;
+        }
+        int column = p.getField();
+        if (td.getFieldType(column) != Type.INT_TYPE || !(p.getOperand() instanceof IntField)) {
+            return true;
+        }
+        int v = ((IntField) p.getOperand()).getValue();
+        int min = zone.min[column];
+        int max = zone.max[column];
+        switch (p.getOp()) {
+        case EQUALS:
+        case LIKE:
+            return min <= v && v <= max;
+        case NOT_EQUALS:
+            return !(min == v && max == v);
+        case GREATER_THAN:
+            return max > v;
+        case GREATER_THAN_OR_EQ:
+            return max >= v;
+        case LESS_THAN:
+            return min < v;
+        case LESS_THAN_OR_EQ:
+            return min <= v;
+        }
+        return true;
+    }
+
+    private synchronized void set(int pageNo, Zone zone, boolean written) throws IOException {
+        while (zones.size() <= pageNo) {
+            zones.add(null);
+        }
+        zones.set(pageNo, zone);
+        if (written) {
+            save(pageNo, zone);
+        }
+    }
+}
@@ -121,6 +121,157 @@ public class HeapFileReadTest extends SimpleDbTestBase {
         it.close();
     }
 
+    /**
+     * Unit test for HeapFile.cursor() and SeqScan.cursor()
+     */
+    @Test
+    public void testCursor() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile twoPageFile = SystemTestUtil.createRandomHeapFile(2, 520,
+                null, tuples);
+
+        TupleCursor cursor = twoPageFile.cursor(tid);
+        int row = 0;
+        while (cursor.advance()) {
+            assertEquals((int) tuples.get(row).get(0), cursor.getInt(0));
+            assertEquals((int) tuples.get(row).get(1), cursor.getInt(1));
+            assertEquals(new IntField(cursor.getInt(1)), cursor.getField(1));
+            assertEquals(cursor.getRecordId(), cursor.getTuple().getRecordId());
+            row++;
+        }
+        assertEquals(520, row);
+        assertFalse(cursor.advance());
+
+        cursor = new SeqScan(tid, twoPageFile.getId(), "t").cursor();
+        row = 0;
+        while (cursor.advance()) {
+            assertEquals((int) tuples.get(row).get(0), cursor.getInt(0));
+            row++;
+        }
+        assertEquals(520, row);
+    }
+
+    /**
+     * Unit test for SeqScan.nextBatch(), with and without a predicate, and
+     * for the adapters between batches and tuples.
+     */
+    @Test
+    public void testBatches() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile twoPageFile = SystemTestUtil.createRandomHeapFile(2, 1500,
+                null, tuples);
+
+        SeqScan scan = new SeqScan(tid, twoPageFile.getId(), "t");
+        scan.open();
+        int row = 0;
+        TupleBatch batch;
+        while ((batch = scan.nextBatch()) != null) {
+            assertTrue(batch.size() <= TupleBatch.DEFAULT_CAPACITY);
+            for (int i = 0; i < batch.numSelected(); i++) {
+                int r = batch.getSelection()[i];
+                assertEquals((int) tuples.get(row).get(0), batch.getInt(0, r));
+                assertEquals(new IntField(tuples.get(row).get(1)), batch.getField(1, r));
+                row++;
+            }
+        }
+        assertEquals(1500, row);
+        scan.rewind();
+        assertEquals(TupleBatch.DEFAULT_CAPACITY, scan.nextBatch().size());
+
+        // next() and nextBatch() do not advance each other
+        scan.rewind();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(tuples.get(i), SystemTestUtil.tupleToList(scan.next()));
+        }
+        batch = scan.nextBatch();
+        assertEquals((int) tuples.get(0).get(0), batch.getInt(0, batch.getSelection()[0]));
+        assertEquals(tuples.get(3), SystemTestUtil.tupleToList(scan.next()));
+        scan.close();
+
+        int expected = 0;
+        for (ArrayList<Integer> t : tuples) {
+            if (t.get(1) < 1000) {
+                expected++;
+            }
+        }
+        Predicate p = new Predicate(1, Predicate.Op.LESS_THAN, new IntField(1000));
+        DbIterator it = BatchAdapter.tuples(new SeqScan(tid, twoPageFile.getId(), "t", p));
+        it.open();
+        int count = 0;
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            assertTrue(p.filter(t));
+            HeapPage page = (HeapPage) twoPageFile.readPage(t.getRecordId().getPageId());
+            assertEquals(page.getField(t.getRecordId().tupleno(), 0), t.getField(0));
+            count++;
+        }
+        assertEquals(expected, count);
+        it.close();
+
+        BatchIterator batches = BatchAdapter.batches(new SeqScan(tid, twoPageFile.getId(), "t"), 100);
+        batches.open();
+        assertEquals(100, batches.nextBatch().size());
+        batches.close();
+    }
+
+    /**
+     * Unit test for SeqScan with a list of columns, alone and with a
+     * predicate on a column that is not returned.
+     */
+    @Test
+    public void testProjection() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile twoPageFile = SystemTestUtil.createRandomHeapFile(3, 600,
+                null, tuples);
+        TupleDesc fileTd = twoPageFile.getTupleDesc();
+
+        SeqScan scan = new SeqScan(tid, twoPageFile.getId(), "t", new int[] { 2, 0 });
+        assertEquals(2, scan.getTupleDesc().numFields());
+        assertEquals("t." + fileTd.getFieldName(2), scan.getTupleDesc().getFieldName(0));
+        scan.open();
+        int row = 0;
+        while (scan.hasNext()) {
+            Tuple t = scan.next();
+            assertEquals(2, t.getTupleDesc().numFields());
+            assertEquals(new IntField(tuples.get(row).get(2)), t.getField(0));
+            assertEquals(new IntField(tuples.get(row).get(0)), t.getField(1));
+            row++;
+        }
+        assertEquals(600, row);
+        scan.close();
+
+        int expected = 0;
+        for (ArrayList<Integer> t : tuples) {
+            if (t.get(0) >= 30000) {
+                expected++;
+            }
+        }
+        Predicate p = new Predicate(0, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(30000));
+        scan = new SeqScan(tid, twoPageFile.getId(), "t", p, new int[] { 1 });
+        scan.open();
+        int count = 0;
+        while (scan.hasNext()) {
+            Tuple t = scan.next();
+            HeapPage page = (HeapPage) twoPageFile.readPage(t.getRecordId().getPageId());
+            assertEquals(page.getField(t.getRecordId().tupleno(), 1), t.getField(0));
+            assertTrue(page.matches(t.getRecordId().tupleno(), p));
+            count++;
+        }
+        assertEquals(expected, count);
+        scan.close();
+
+        scan = new SeqScan(tid, twoPageFile.getId(), "t", p, new int[] { 1 });
+        scan.open();
+        count = 0;
+        TupleBatch batch;
+        while ((batch = scan.nextBatch()) != null) {
+            assertEquals(1, batch.getTupleDesc().numFields());
+            count += batch.numSelected();
+        }
+        assertEquals(expected, count);
+        scan.close();
+    }
+
     /**
      * JUnit suite target
      */
@@ -0,0 +1,373 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.File;
+import java.util.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class HeapFileWriteTest extends SimpleDbTestBase {
+    private TransactionId tid;
+
+    /**
+     * Set up initial resources for each unit test.
+     */
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        tid = new TransactionId();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * Appending pages grows the file by whole extents while numPages() only
+     * counts the pages that were written.
+     */
+    @Test
+    public void extentPreallocation() throws Exception {
+        File f = File.createTempFile("extent", ".dat");
+        SystemTestUtil.deleteOnExit(f);
+        int pageSize = BufferPool.getPageSize();
+        HeapFile hf = new HeapFile(f, Utility.getTupleDesc(2), 4 * pageSize);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        assertEquals(0, hf.numPages());
+
+        hf.writePage(new HeapPage(new HeapPageId(hf.getId(), 0), HeapPage.createEmptyPageData()));
+        assertEquals(1, hf.numPages());
+        assertEquals(4 * pageSize, f.length());
+
+        for (int i = 0; i < 504 * 2 + 1; ++i) {
+            hf.insertTuple(tid, Utility.getHeapTuple(i, 2));
+        }
+        assertEquals(3, hf.numPages());
+        assertEquals(4 * pageSize, f.length());
+
+        hf.writePage(new HeapPage(new HeapPageId(hf.getId(), 4), HeapPage.createEmptyPageData()));
+        assertEquals(5, hf.numPages());
+        assertEquals(8 * pageSize, f.length());
+    }
+
+    /**
+     * A newly opened HeapFile ignores the zeroed pages preallocated at the
+     * end of the file, but not empty pages that were written.
+     */
+    @Test
+    public void reopenIgnoresPreallocatedPages() throws Exception {
+        File f = File.createTempFile("extent", ".dat");
+        SystemTestUtil.deleteOnExit(f);
+        int pageSize = BufferPool.getPageSize();
+        HeapFile hf = new HeapFile(f, Utility.getTupleDesc(2), 8 * pageSize);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        hf.writePage(new HeapPage(new HeapPageId(hf.getId(), 0), HeapPage.createEmptyPageData()));
+        for (int i = 0; i < 600; ++i) {
+            hf.insertTuple(tid, Utility.getHeapTuple(i, 2));
+        }
+        assertEquals(2, hf.numPages());
+
+        HeapFile reopened = new HeapFile(f, Utility.getTupleDesc(2), 8 * pageSize);
+        assertEquals(2, reopened.numPages());
+
+        hf.writePage(new HeapPage(new HeapPageId(hf.getId(), 2), HeapPage.createEmptyPageData()));
+        reopened = new HeapFile(f, Utility.getTupleDesc(2), 8 * pageSize);
+        assertEquals(3, reopened.numPages());
+        assertEquals(8 * pageSize, f.length());
+    }
+
+    /**
+     * Pages written after the last count that reached the sidecar are found
+     * again on open, and reading a file that does not exist does not
+     * create it.
+     */
+    @Test
+    public void reopenAfterLostCount() throws Exception {
+        File f = File.createTempFile("extent", ".dat");
+        SystemTestUtil.deleteOnExit(f);
+        File count = new File(f.getPath() + ".pages");
+        int pageSize = BufferPool.getPageSize();
+        HeapFile hf = new HeapFile(f, Utility.getTupleDesc(2), 8 * pageSize);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        hf.writePage(new HeapPage(new HeapPageId(hf.getId(), 0), HeapPage.createEmptyPageData()));
+        for (int i = 0; i < 600; ++i) {
+            hf.insertTuple(tid, Utility.getHeapTuple(i, 2));
+        }
+        assertEquals(2, hf.numPages());
+
+        // as if only the first count had been saved before a crash
+        java.nio.file.Files.write(count.toPath(), new byte[] { 0, 0, 0, 1 });
+        assertEquals(2, new HeapFile(f, Utility.getTupleDesc(2), 8 * pageSize).numPages());
+
+        File missing = new File(f.getPath() + ".missing");
+        SystemTestUtil.deleteOnExit(missing);
+        HeapFile empty = new HeapFile(missing, Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(empty, SystemTestUtil.getUUID());
+        assertEquals(0, empty.numPages());
+        assertEquals(504, ((HeapPage) empty.readPage(new HeapPageId(empty.getId(), 0))).getNumEmptySlots());
+        assertFalse(missing.exists());
+    }
+
+    /**
+     * Pages written in direct I/O mode read back the same, whether or not the
+     * file system lets the file bypass the page cache.
+     */
+    @Test
+    public void directIo() throws Exception {
+        File f = File.createTempFile("direct", ".dat");
+        SystemTestUtil.deleteOnExit(f);
+        HeapFile hf = new HeapFile(f, Utility.getTupleDesc(2), HeapFile.DEFAULT_EXTENT_SIZE, true);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        HeapPageId pid = new HeapPageId(hf.getId(), 1);
+        HeapPage written = new HeapPage(pid, HeapPage.createEmptyPageData());
+        for (int i = 0; i < 96; ++i) {
+            written.insertTuple(Utility.getHeapTuple(i, 2));
+        }
+        hf.writePage(written);
+        assertEquals(2, hf.numPages());
+
+        HeapFile reopened = new HeapFile(f, Utility.getTupleDesc(2), HeapFile.DEFAULT_EXTENT_SIZE, true);
+        HeapPage page = (HeapPage) reopened.readPage(pid);
+        assertEquals(504 - 96, page.getNumEmptySlots());
+        assertEquals(new IntField(0), page.iterator().next().getField(0));
+    }
+
+    /**
+     * Creates a table of the given number of full pages, then deletes all
+     * but every tenth tuple through the BufferPool.
+     *
+     * @return the values of the remaining tuples
+     */
+    private Set<Integer> createChurnedFile(HeapFile hf, int pages) throws Exception {
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        int value = 0;
+        for (int pageNo = 0; pageNo < pages; pageNo++) {
+            HeapPage page = new HeapPage(new HeapPageId(hf.getId(), pageNo), HeapPage.createEmptyPageData());
+            while (page.getNumEmptySlots() > 0) {
+                page.insertTuple(Utility.getHeapTuple(value++, 2));
+            }
+            hf.writePage(page);
+        }
+
+        Set<Integer> remaining = new HashSet<Integer>();
+        DbFileIterator it = hf.iterator(tid);
+        it.open();
+        List<Tuple> doomed = new ArrayList<Tuple>();
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            int v = ((IntField) t.getField(0)).getValue();
+            if (v % 10 == 0) {
+                remaining.add(v);
+            } else {
+                doomed.add(t);
+            }
+        }
+        it.close();
+        for (Tuple t : doomed) {
+            Database.getBufferPool().deleteTuple(tid, t);
+        }
+        return remaining;
+    }
+
+    private Set<Integer> scan(HeapFile hf) throws Exception {
+        Set<Integer> values = new HashSet<Integer>();
+        DbFileIterator it = hf.iterator(tid);
+        it.open();
+        while (it.hasNext()) {
+            assertTrue(values.add(((IntField) it.next().getField(0)).getValue()));
+        }
+        it.close();
+        return values;
+    }
+
+    /**
+     * Compaction moves live tuples to the front and truncates the file.
+     */
+    @Test
+    public void compact() throws Exception {
+        File f = File.createTempFile("compact", ".dat");
+        SystemTestUtil.deleteOnExit(f);
+        HeapFile hf = new HeapFile(f, Utility.getTupleDesc(2), BufferPool.getPageSize());
+        Set<Integer> remaining = createChurnedFile(hf, 10);
+        assertEquals(10, hf.numPages());
+
+        Map<RecordId, RecordId> relocated = new HashMap<RecordId, RecordId>();
+        assertFalse(hf.compact(tid, 4, relocated));
+        // the zone map covers the tuples moved to the front page before the
+        // page is written back
+        HeapPage front = (HeapPage) Database.getBufferPool().getPage(tid,
+                new HeapPageId(hf.getId(), 0), Permissions.READ_ONLY);
+        Iterator<Tuple> moved = front.iterator();
+        while (moved.hasNext()) {
+            Predicate p = new Predicate(0, Predicate.Op.EQUALS, moved.next().getField(0));
+            assertTrue(hf.getZoneMap().mightMatch(0, p));
+        }
+        Database.getBufferPool().flushPages(tid);
+        int steps = 1;
+        while (!hf.compact(tid, 4, relocated)) {
+            // moved tuples reach the file when the step is written back
+            Database.getBufferPool().flushPages(tid);
+            assertTrue(++steps < 100);
+        }
+        Database.getBufferPool().flushPages(tid);
+        assertTrue(steps > 0);
+        assertEquals(1, hf.numPages());
+        assertEquals((long) BufferPool.getPageSize(), f.length());
+        assertFalse(relocated.isEmpty());
+        for (RecordId rid : relocated.values()) {
+            assertEquals(0, rid.getPageId().pageNumber());
+        }
+        assertEquals(remaining, scan(hf));
+
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        assertEquals(remaining, scan(new HeapFile(f, Utility.getTupleDesc(2))));
+    }
+
+    /**
+     * A background vacuum reaches the same result.
+     */
+    @Test
+    public void vacuum() throws Exception {
+        File f = File.createTempFile("vacuum", ".dat");
+        SystemTestUtil.deleteOnExit(f);
+        HeapFile hf = new HeapFile(f, Utility.getTupleDesc(2));
+        Set<Integer> remaining = createChurnedFile(hf, 10);
+
+        final List<RecordId> moved = Collections.synchronizedList(new ArrayList<RecordId>());
+        Vacuum vacuum = new Vacuum(hf, 1000, new Vacuum.RelocationListener() {
+            public void relocated(RecordId from, RecordId to) {
+                moved.add(to);
+            }
+        });
+        vacuum.start();
+        assertTrue(vacuum.awaitCompletion(10000));
+        assertNull(vacuum.getError());
+        assertEquals(1, hf.numPages());
+        assertFalse(moved.isEmpty());
+        assertEquals(remaining, scan(hf));
+    }
+
+    /**
+     * Adding a column leaves the file as it is: old pages read the default,
+     * and a page moves to the new layout when it is next written, if its
+     * tuples fit.
+     */
+    @Test
+    public void addColumn() throws Exception {
+        HeapFile hf = SystemTestUtil.createRandomHeapFile(2, 504 * 2 + 10, null, null);
+        long length = hf.getFile().length();
+        assertEquals(1, Database.getCatalog().addColumn(hf.getId(), "c", new IntField(7)));
+        assertEquals(3, hf.getTupleDesc().numFields());
+        assertEquals(2, Database.getCatalog().getTupleDesc(hf.getId(), 0).numFields());
+        assertEquals(length, hf.getFile().length());
+
+        // the last page fits the wider tuples, so it takes the insert
+        Tuple t = new Tuple(hf.getTupleDesc());
+        t.setInt(0, 1);
+        t.setInt(1, 2);
+        t.setInt(2, 99);
+        ArrayList<Page> affected = hf.insertTuple(tid, t);
+        assertEquals(2, affected.get(0).getId().pageNumber());
+        hf.writePage(affected.get(0));
+
+        // the first page is full, so it keeps the old layout when written
+        DbFileIterator it = hf.iterator(tid);
+        it.open();
+        Tuple first = it.next();
+        it.close();
+        hf.writePage(hf.deleteTuple(tid, first).get(0));
+
+        Database.getBufferPool().transactionComplete(tid);
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        tid = new TransactionId();
+
+        assertTrue(hf.versionFile().exists());
+        int count = 0, added = 0;
+        it = hf.iterator(tid);
+        it.open();
+        while (it.hasNext()) {
+            Tuple next = it.next();
+            count++;
+            int c = next.getInt(2);
+            if (c == 99) {
+                added++;
+                assertEquals(2, next.getRecordId().getPageId().pageNumber());
+            } else {
+                assertEquals(7, c);
+            }
+        }
+        it.close();
+        assertEquals(504 * 2 + 10, count);
+        assertEquals(1, added);
+    }
+
+    /**
+     * The schema versions of a table outlive its catalog: a file reopened
+     * with the schema it was created with, or with its current schema, reads
+     * both its old and its new pages.
+     */
+    @Test
+    public void addColumnReopen() throws Exception {
+        HeapFile hf = SystemTestUtil.createRandomHeapFile(2, 504 + 10, null, null);
+        File f = hf.getFile();
+        Database.getCatalog().addColumn(hf.getId(), "c", new IntField(7));
+
+        // the last page takes the insert and moves to the new layout
+        Tuple t = new Tuple(hf.getTupleDesc());
+        t.setInt(0, 1);
+        t.setInt(1, 2);
+        t.setInt(2, 99);
+        hf.writePage(hf.insertTuple(tid, t).get(0));
+        Database.getBufferPool().transactionComplete(tid);
+
+        for (TupleDesc td : new TupleDesc[] { Utility.getTupleDesc(2), Utility.getTupleDesc(3) }) {
+            Database.reset();
+            tid = new TransactionId();
+            HeapFile reopened = new HeapFile(f, td);
+            Database.getCatalog().addTable(reopened, SystemTestUtil.getUUID());
+            assertEquals(3, reopened.getTupleDesc().numFields());
+            assertEquals(1, Database.getCatalog().getSchemaVersion(reopened.getId()));
+            assertEquals(new IntField(7), Database.getCatalog().getDefaultValue(reopened.getId(), 2));
+
+            int[] perPage = new int[2];
+            int added = 0;
+            DbFileIterator it = reopened.iterator(tid);
+            it.open();
+            while (it.hasNext()) {
+                Tuple next = it.next();
+                perPage[next.getRecordId().getPageId().pageNumber()]++;
+                if (next.getInt(2) == 99) {
+                    added++;
+                } else {
+                    assertEquals(7, next.getInt(2));
+                }
+            }
+            it.close();
+            assertEquals(504, perPage[0]);
+            assertEquals(11, perPage[1]);
+            assertEquals(1, added);
+        }
+
+        Database.reset();
+        try {
+            Database.getCatalog().addTable(new HeapFile(f, Utility.getTupleDesc(4)), SystemTestUtil.getUUID());
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(HeapFileWriteTest.class);
+    }
+}
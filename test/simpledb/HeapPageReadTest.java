@@ -12,6 +12,7 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import junit.framework.JUnit4TestAdapter;
 
@@ -56,7 +57,7 @@ public class HeapPageReadTest extends SimpleDbTestBase {
         // Convert it to a HeapFile and read in the bytes
         try {
             File temp = File.createTempFile("table", ".dat");
-            temp.deleteOnExit();
+            SystemTestUtil.deleteOnExit(temp);
             HeapFileEncoder.convert(table, temp, BufferPool.getPageSize(), 2);
             EXAMPLE_DATA = TestUtil.readFileBytes(temp.getAbsolutePath());
         } catch (IOException e) {
@@ -99,6 +100,45 @@ public class HeapPageReadTest extends SimpleDbTestBase {
         }
     }
 
+    /**
+     * Unit test for HeapPage.getTuple() and HeapPage.getField()
+     */
+    @Test public void getTupleAndField() throws Exception {
+        HeapPage page = new HeapPage(pid, EXAMPLE_DATA);
+
+        for (int row = 0; row < EXAMPLE_VALUES.length; row++) {
+            assertEquals(new IntField(EXAMPLE_VALUES[row][1]), page.getField(row, 1));
+        }
+        Tuple tup = page.getTuple(7);
+        assertEquals(new RecordId(pid, 7), tup.getRecordId());
+        assertEquals(new IntField(EXAMPLE_VALUES[7][0]), tup.getField(0));
+        assertEquals(new IntField(EXAMPLE_VALUES[7][1]), tup.getField(1));
+
+        assertNull(page.getTuple(20));
+        assertNull(page.getField(20, 0));
+    }
+
+    /**
+     * Unit test for HeapPage.matches() and HeapPage.iterator(Predicate)
+     */
+    @Test public void matchesPredicate() throws Exception {
+        HeapPage page = new HeapPage(pid, EXAMPLE_DATA);
+        Predicate p = new Predicate(1, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(36090));
+
+        Iterator<Tuple> it = page.iterator(p);
+        for (int row = 0; row < EXAMPLE_VALUES.length; row++) {
+            boolean match = EXAMPLE_VALUES[row][1] >= 36090;
+            assertEquals(match, page.matches(row, p));
+            if (match) {
+                assertTrue(it.hasNext());
+                assertEquals(new RecordId(pid, row), it.next().getRecordId());
+            } else {
+                assertNull(page.tuples[row]);
+            }
+        }
+        assertFalse(it.hasNext());
+    }
+
     /**
      * Unit test for HeapPage.getNumEmptySlots()
      */
@@ -0,0 +1,120 @@
+package simpledb;
+
+import simpledb.TestUtil.SkeletonFile;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.util.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import junit.framework.JUnit4TestAdapter;
+
+public class HeapPageWriteTest extends SimpleDbTestBase {
+    private HeapPageId pid;
+
+    /**
+     * Set up initial resources for each unit test.
+     */
+    @Before public void addTable() throws Exception {
+        this.pid = new HeapPageId(-1, -1);
+        Database.getCatalog().addTable(new SkeletonFile(-1, Utility.getTupleDesc(2)), SystemTestUtil.getUUID());
+    }
+
+    /**
+     * Unit test for HeapPage.getPageData() after insertTuple() and
+     * deleteTuple()
+     */
+    @Test public void pageDataTracksChanges() throws Exception {
+        byte[] original = HeapPageReadTest.EXAMPLE_DATA.clone();
+        HeapPage page = new HeapPage(pid, HeapPageReadTest.EXAMPLE_DATA);
+
+        Tuple added = Utility.getHeapTuple(new int[] { 7, 8 });
+        page.insertTuple(added);
+        page.deleteTuple(page.getTuple(3));
+
+        // the caller's buffer is not modified
+        assertArrayEquals(original, HeapPageReadTest.EXAMPLE_DATA);
+
+        HeapPage copy = new HeapPage(pid, page.getPageData());
+        assertEquals(page.getNumEmptySlots(), copy.getNumEmptySlots());
+        assertFalse(copy.isSlotUsed(3));
+        assertTrue(copy.isSlotUsed(20));
+        assertEquals(new IntField(7), copy.getField(20, 0));
+        assertEquals(new IntField(8), copy.getField(20, 1));
+        assertEquals(new IntField(HeapPageReadTest.EXAMPLE_VALUES[4][1]), copy.getField(4, 1));
+
+        // the before image is the page as it was loaded
+        assertArrayEquals(original, page.getBeforeImage().getPageData());
+    }
+
+    /**
+     * Unit test for HeapPage.getBeforeImage(): the image is only copied
+     * when the page is first modified after a load or setBeforeImage()
+     */
+    @Test public void beforeImageIsLazy() throws Exception {
+        HeapPage page = new HeapPage(pid, HeapPageReadTest.EXAMPLE_DATA);
+        assertNull(page.oldData);
+        assertArrayEquals(HeapPageReadTest.EXAMPLE_DATA, page.getBeforeImage().getPageData());
+
+        page.insertTuple(Utility.getHeapTuple(new int[] { 1, 2 }));
+        byte[] afterInsert = page.getPageData();
+        page.setBeforeImage();
+        assertNull(page.oldData);
+        assertArrayEquals(afterInsert, page.getBeforeImage().getPageData());
+
+        page.deleteTuple(page.getTuple(0));
+        page.deleteTuple(page.getTuple(1));
+        assertArrayEquals(afterInsert, page.getBeforeImage().getPageData());
+    }
+
+    /**
+     * Unit test for HeapPage.nextUsedSlot() and HeapPage.nextEmptySlot()
+     * across header words
+     */
+    @Test public void slotBitmap() throws Exception {
+        HeapPage page = new HeapPage(pid, HeapPageReadTest.EXAMPLE_DATA);
+        assertEquals(20, page.nextEmptySlot(0));
+        assertEquals(-1, page.nextUsedSlot(20));
+
+        for (int i = 0; i < 60; i++) {
+            page.insertTuple(Utility.getHeapTuple(new int[] { i, i }));
+        }
+        assertEquals(80, page.nextEmptySlot(0));
+        assertEquals(64, page.nextUsedSlot(64));
+        assertEquals(424, page.getNumEmptySlots());
+
+        page.deleteTuple(page.getTuple(70));
+        assertEquals(70, page.nextEmptySlot(0));
+        assertEquals(71, page.nextUsedSlot(70));
+        assertEquals(425, page.getNumEmptySlots());
+
+        Tuple stale = new Tuple(page.td);
+        stale.setRecordId(new RecordId(pid, 70));
+        try {
+            page.deleteTuple(stale);
+            fail("slot 70 is empty");
+        } catch (DbException e) {
+            // expected
+        }
+
+        HeapPage copy = new HeapPage(pid, page.getPageData());
+        assertEquals(425, copy.getNumEmptySlots());
+        assertFalse(copy.isSlotUsed(70));
+        assertTrue(copy.isSlotUsed(79));
+        assertEquals(-1, copy.nextUsedSlot(80));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(HeapPageWriteTest.class);
+    }
+}
@@ -0,0 +1,87 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class KeyEncoderTest extends SimpleDbTestBase {
+
+    /**
+     * Keys of single fields order as Field.compare does.
+     */
+    @Test public void fieldOrder() {
+        Random rand = new Random(42);
+        Field[][] pairs = new Field[300][];
+        for (int i = 0; i < 100; i++) {
+            pairs[i] = new Field[] { new IntField(rand.nextInt()), new IntField(rand.nextInt(5) - 2) };
+            pairs[i + 100] = new Field[] { new DoubleField(rand.nextGaussian()),
+                    new DoubleField(i % 10 == 0 ? -0.0 : rand.nextGaussian()) };
+            pairs[i + 200] = new Field[] { new StringField(randomString(rand), 8),
+                    new StringField(randomString(rand), 8) };
+        }
+        for (Field[] pair : pairs) {
+            int len = KeyEncoder.encodedLength(pair[0].getType(), 8);
+            byte[] a = new byte[len];
+            byte[] b = new byte[len];
+            KeyEncoder.encode(pair[0], 8, a, 0);
+            KeyEncoder.encode(pair[1], 8, b, 0);
+            int cmp = Integer.signum(Arrays.compareUnsigned(a, b));
+            int expected = pair[0].compare(Predicate.Op.LESS_THAN, pair[1]) ? -1
+                    : pair[0].compare(Predicate.Op.EQUALS, pair[1]) ? 0 : 1;
+            assertEquals(pair[0] + " vs " + pair[1], expected, cmp);
+        }
+    }
+
+    /**
+     * Composite keys order by the first column, then the second.
+     */
+    @Test public void compositeKeys() {
+        TupleDesc td = new TupleDesc(new Type[] { Type.INT_TYPE, Type.STRING_TYPE, Type.LONG_TYPE },
+                new String[] { "a", "b", "c" }, new int[] { 0, 4, 0 });
+        KeyEncoder keys = new KeyEncoder(td, new int[] { 1, 0 });
+        assertEquals(8, keys.getKeyLength());
+
+        Random rand = new Random(7);
+        List<Tuple> tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < 200; i++) {
+            Tuple t = new Tuple(td);
+            t.setInt(0, rand.nextInt(21) - 10);
+            t.setString(1, randomString(rand));
+            t.setField(2, new LongField(i));
+            tuples.add(t);
+        }
+        List<Tuple> sorted = new ArrayList<Tuple>(tuples);
+        sorted.sort(keys.comparator());
+        for (int i = 1; i < sorted.size(); i++) {
+            Tuple p = sorted.get(i - 1);
+            Tuple t = sorted.get(i);
+            int cmp = p.getString(1).compareTo(t.getString(1));
+            assertTrue(cmp < 0 || cmp == 0 && p.getInt(0) <= t.getInt(0));
+        }
+
+        byte[] packed = new byte[2 * keys.getKeyLength()];
+        keys.encode(sorted.get(0), packed, 0);
+        keys.encode(sorted.get(1), packed, keys.getKeyLength());
+        assertTrue(keys.compare(packed, 0, packed, keys.getKeyLength()) <= 0);
+        assertEquals(0, keys.compare(packed, 0, keys.encode(sorted.get(0)), 0));
+    }
+
+    private static String randomString(Random rand) {
+        char[] cs = new char[rand.nextInt(4)];
+        for (int i = 0; i < cs.length; i++) {
+            cs[i] = (char) ('a' + rand.nextInt(3));
+        }
+        return new String(cs);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(KeyEncoderTest.class);
+    }
+}
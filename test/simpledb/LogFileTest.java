@@ -0,0 +1,49 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class LogFileTest extends SimpleDbTestBase {
+
+    /**
+     * A page written into a log record reads back with the same id and data.
+     */
+    @Test
+    public void pageDataRoundTrip() throws Exception {
+        File f = File.createTempFile("table", ".dat");
+        SystemTestUtil.deleteOnExit(f);
+        HeapFile hf = new HeapFile(f, Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        HeapPage page = new HeapPage(new HeapPageId(hf.getId(), 3), HeapPage.createEmptyPageData());
+        for (int i = 0; i < 10; i++) {
+            page.insertTuple(Utility.getHeapTuple(i, 2));
+        }
+
+        File logFile = File.createTempFile("log", ".dat");
+        logFile.deleteOnExit();
+        LogFile log = new LogFile(logFile);
+        try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+            log.writePageData(raf, page);
+            raf.seek(0);
+            Page read = log.readPageData(raf);
+            assertEquals(page.getId(), read.getId());
+            assertArrayEquals(page.getPageData(), read.getPageData());
+            assertEquals(raf.length(), raf.getFilePointer());
+        }
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(LogFileTest.class);
+    }
+}
@@ -0,0 +1,85 @@
+package simpledb;
+
+import simpledb.TestUtil.SkeletonFile;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class PaxPageTest extends SimpleDbTestBase {
+
+    /**
+     * Each column is stored contiguously after the header.
+     */
+    @Test public void columnLayout() throws Exception {
+        Database.getCatalog().addTable(new SkeletonFile(-1, Utility.getTupleDesc(3)), SystemTestUtil.getUUID());
+        HeapPageId pid = new HeapPageId(-1, 0);
+        PaxPage page = new PaxPage(pid, HeapPage.createEmptyPageData());
+        for (int i = 0; i < 10; i++) {
+            page.insertTuple(Utility.getHeapTuple(new int[] { i, 100 + i, 200 + i }));
+        }
+        page.deleteTuple(page.getTuple(4));
+
+        ByteBuffer data = ByteBuffer.wrap(page.getPageData());
+        int slots = page.numSlots;
+        int column1 = page.headerSize + slots * 4;
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i == 4 ? 0 : 100 + i, data.getInt(column1 + 4 * i));
+        }
+
+        PaxPage copy = new PaxPage(pid, page.getPageData());
+        assertEquals(slots - 9, copy.getNumEmptySlots());
+        assertEquals(new IntField(207), copy.getField(7, 2));
+        TupleCursor cursor = copy.cursor();
+        int count = 0;
+        while (cursor.advance()) {
+            assertEquals(cursor.getInt(0) + 200, cursor.getInt(2));
+            count++;
+        }
+        assertEquals(9, count);
+    }
+
+    /**
+     * A PaxFile can be scanned with SeqScan.
+     */
+    @Test public void seqScan() throws Exception {
+        File f = File.createTempFile("pax", ".dat");
+        SystemTestUtil.deleteOnExit(f);
+        PaxFile pf = new PaxFile(f, Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(pf, SystemTestUtil.getUUID());
+        TransactionId tid = new TransactionId();
+        for (int i = 0; i < 1000; i++) {
+            Database.getBufferPool().insertTuple(tid, pf.getId(), Utility.getHeapTuple(new int[] { i, -i }));
+        }
+        Database.getBufferPool().flushAllPages();
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+
+        SeqScan scan = new SeqScan(tid, pf.getId(), "p");
+        scan.open();
+        int sum = 0;
+        int count = 0;
+        while (scan.hasNext()) {
+            Tuple t = scan.next();
+            assertEquals(-((IntField) t.getField(0)).getValue(), ((IntField) t.getField(1)).getValue());
+            sum += ((IntField) t.getField(0)).getValue();
+            count++;
+        }
+        scan.close();
+        assertEquals(1000, count);
+        assertEquals(999 * 1000 / 2, sum);
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PaxPageTest.class);
+    }
+}
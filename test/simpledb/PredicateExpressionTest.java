@@ -0,0 +1,149 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class PredicateExpressionTest extends SimpleDbTestBase {
+
+    /**
+     * A compiled comparison agrees with Field.compare for every operator and
+     * type, on Tuples and on TupleBatches.
+     */
+    @Test public void comparisons() {
+        Type[] types = new Type[] { Type.INT_TYPE, Type.LONG_TYPE, Type.DOUBLE_TYPE,
+                Type.DATE_TYPE, Type.STRING_TYPE };
+        TupleDesc td = new TupleDesc(types);
+        Field[][] values = new Field[][] {
+            { new IntField(-1), new IntField(0), new IntField(7) },
+            { new LongField(Long.MIN_VALUE), new LongField(3), new LongField(4) },
+            { new DoubleField(-0.5), new DoubleField(2.0), new DoubleField(Double.NaN) },
+            { DateField.valueOf("1999-12-31"), DateField.valueOf("2000-01-01"), DateField.valueOf("2024-02-29") },
+            { new StringField("ab", Type.STRING_LEN), new StringField("b", Type.STRING_LEN),
+                new StringField("abc", Type.STRING_LEN) }
+        };
+
+        TupleBatch batch = new TupleBatch(td, 3);
+        List<Tuple> tuples = new ArrayList<Tuple>();
+        for (int row = 0; row < 3; row++) {
+            Tuple t = new Tuple(td);
+            for (int j = 0; j < types.length; j++) {
+                t.setField(j, values[j][row]);
+            }
+            tuples.add(t);
+            batch.addTuple(t);
+        }
+
+        for (int j = 0; j < types.length; j++) {
+            for (Predicate.Op op : Predicate.Op.values()) {
+                for (Field operand : values[j]) {
+                    PredicateExpression.Compiled c =
+                            PredicateExpression.compare(j, op, operand).compile(td);
+                    for (int row = 0; row < 3; row++) {
+                        boolean expected = values[j][row].compare(op, operand);
+                        assertEquals(expected, c.test(tuples.get(row)));
+                        assertEquals(expected, c.test(batch, row));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * AND, OR, NOT and field-to-field comparisons, and batch filtering.
+     */
+    @Test public void expressions() {
+        TupleDesc td = Utility.getTupleDesc(3);
+        PredicateExpression e = PredicateExpression.or(
+                PredicateExpression.and(
+                        PredicateExpression.compare(0, Predicate.Op.GREATER_THAN, new IntField(10)),
+                        PredicateExpression.compareFields(1, Predicate.Op.LESS_THAN, 2)),
+                PredicateExpression.not(
+                        PredicateExpression.compare(2, Predicate.Op.NOT_EQUALS, new IntField(5))));
+        PredicateExpression.Compiled c = e.compile(td);
+
+        Random r = new Random(42);
+        TupleBatch batch = new TupleBatch(td, 200);
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int row = 0; row < 200; row++) {
+            Tuple t = Utility.getHeapTuple(new int[] { r.nextInt(20), r.nextInt(10), r.nextInt(10) });
+            boolean match = (t.getInt(0) > 10 && t.getInt(1) < t.getInt(2)) || t.getInt(2) == 5;
+            assertEquals(match, c.test(t));
+            if (match) {
+                expected.add(row);
+            }
+            batch.addTuple(t);
+        }
+        assertEquals(expected.size(), c.filter(batch));
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals((int) expected.get(i), batch.getSelection()[i]);
+        }
+
+        try {
+            PredicateExpression.compare(0, Predicate.Op.EQUALS, new LongField(1)).compile(td);
+            fail("expected exception");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    /**
+     * SeqScan with an expression returns the matching tuples, by tuple and
+     * by batch.
+     */
+    @Test public void seqScan() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile f = SystemTestUtil.createRandomHeapFile(2, 1200, null, tuples);
+        PredicateExpression e = PredicateExpression.and(
+                PredicateExpression.compare(0, Predicate.Op.LESS_THAN_OR_EQ, new IntField(1 << 15)),
+                PredicateExpression.compareFields(0, Predicate.Op.GREATER_THAN, 1));
+        ArrayList<ArrayList<Integer>> matching = new ArrayList<ArrayList<Integer>>();
+        for (ArrayList<Integer> t : tuples) {
+            if (t.get(0) <= 1 << 15 && t.get(0) > t.get(1)) {
+                matching.add(t);
+            }
+        }
+
+        TransactionId tid = new TransactionId();
+        SystemTestUtil.matchTuples(new SeqScan(tid, f.getId(), "t", e), matching);
+
+        matchBatches(new SeqScan(tid, f.getId(), "t", e), matching);
+
+        // a file that is not a HeapFile is filtered by the scan itself
+        final HeapFile heap = f;
+        DbFile plain = new TestUtil.SkeletonFile(f.getId() + 1, f.getTupleDesc()) {
+            public DbFileIterator iterator(TransactionId tid) {
+                return heap.iterator(tid);
+            }
+        };
+        Database.getCatalog().addTable(plain, SystemTestUtil.getUUID());
+        SystemTestUtil.matchTuples(new SeqScan(tid, plain.getId(), "t", e), matching);
+        matchBatches(new SeqScan(tid, plain.getId(), "t", e), matching);
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    private static void matchBatches(SeqScan scan, List<ArrayList<Integer>> matching) throws Exception {
+        scan.open();
+        int count = 0;
+        TupleBatch batch;
+        while ((batch = scan.nextBatch()) != null) {
+            for (int i = 0; i < batch.numSelected(); i++) {
+                assertEquals(matching.get(count++), SystemTestUtil.tupleToList(
+                        batch.getTuple(batch.getSelection()[i])));
+            }
+        }
+        assertEquals(matching.size(), count);
+        scan.close();
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PredicateExpressionTest.class);
+    }
+}
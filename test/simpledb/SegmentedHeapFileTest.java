@@ -0,0 +1,130 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class SegmentedHeapFileTest extends SimpleDbTestBase {
+    private TransactionId tid;
+    private SegmentedHeapFile hf;
+    private File dir;
+
+    /**
+     * Set up a file of 5 full pages spread over segments of 2 pages each.
+     */
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        tid = new TransactionId();
+        dir = Files.createTempDirectory("segmented").toFile();
+        SystemTestUtil.deleteOnExit(dir);
+        hf = new SegmentedHeapFile(dir, Utility.getTupleDesc(2), 2);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+
+        int value = 0;
+        for (int pageNo = 0; pageNo < 5; pageNo++) {
+            HeapPage page = new HeapPage(new HeapPageId(hf.getId(), pageNo), HeapPage.createEmptyPageData());
+            while (page.getNumEmptySlots() > 0) {
+                page.insertTuple(Utility.getHeapTuple(value++, 2));
+            }
+            hf.writePage(page);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Database.getBufferPool().transactionComplete(tid);
+        SystemTestUtil.deleteOnExit(dir);
+    }
+
+    private int segmentFiles() {
+        return dir.listFiles((d, name) -> name.endsWith(".seg")).length;
+    }
+
+    private static int count(DbFileIterator it) throws Exception {
+        int count = 0;
+        it.open();
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        it.close();
+        return count;
+    }
+
+    /**
+     * Unit test for SegmentedHeapFile.numPages() and numSegments()
+     */
+    @Test
+    public void layout() throws Exception {
+        assertEquals(5, hf.numPages());
+        assertEquals(3, hf.numSegments());
+        assertEquals(3, segmentFiles());
+
+        SegmentedHeapFile reopened = new SegmentedHeapFile(dir, Utility.getTupleDesc(2), 2);
+        assertEquals(5, reopened.numPages());
+    }
+
+    /**
+     * Scanning the whole file and scanning it one segment at a time see the
+     * same tuples.
+     */
+    @Test
+    public void scan() throws Exception {
+        assertEquals(5 * 504, count(hf.iterator(tid)));
+        assertEquals(2 * 504, count(hf.segmentIterator(tid, 0)));
+        assertEquals(504, count(hf.segmentIterator(tid, 2)));
+
+        HeapPage page = (HeapPage) hf.readPage(new HeapPageId(hf.getId(), 3));
+        assertEquals(new IntField(3 * 504), page.iterator().next().getField(0));
+    }
+
+    /**
+     * Dropping a segment removes its file and its tuples.
+     */
+    @Test
+    public void dropSegment() throws Exception {
+        assertEquals(504, hf.getZoneMap().getCount(1));
+        hf.dropSegment(0);
+        assertEquals(-1, hf.getZoneMap().getCount(1));
+        assertEquals(2, segmentFiles());
+        assertEquals(5, hf.numPages());
+        assertEquals(3 * 504, count(hf.iterator(tid)));
+
+        hf.dropSegment(2);
+        assertEquals(4, hf.numPages());
+        assertEquals(2 * 504, count(hf.iterator(tid)));
+    }
+
+    /**
+     * A reopened file uses the saved zone map only if it is not older than
+     * the newest segment, which is newer than the directory.
+     */
+    @Test
+    public void zoneMapSidecar() throws Exception {
+        SegmentedHeapFile reopened = new SegmentedHeapFile(dir, Utility.getTupleDesc(2), 2);
+        assertEquals(504, reopened.getZoneMap().getCount(4));
+
+        File segment = new File(dir, "2.seg");
+        assertTrue(segment.setLastModified(dir.lastModified() + 10000));
+        assertTrue(hf.zoneFile().setLastModified(dir.lastModified() + 5000));
+        reopened = new SegmentedHeapFile(dir, Utility.getTupleDesc(2), 2);
+        assertEquals(-1, reopened.getZoneMap().getCount(4));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SegmentedHeapFileTest.class);
+    }
+}
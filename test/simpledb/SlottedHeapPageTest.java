@@ -0,0 +1,141 @@
+package simpledb;
+
+import simpledb.TestUtil.SkeletonFile;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.File;
+import java.util.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class SlottedHeapPageTest extends SimpleDbTestBase {
+    private static final TupleDesc TD = new TupleDesc(
+            new Type[] { Type.INT_TYPE, Type.STRING_TYPE }, new String[] { "id", "name" });
+
+    private HeapPageId pid;
+
+    /**
+     * Set up initial resources for each unit test.
+     */
+    @Before public void addTable() throws Exception {
+        this.pid = new HeapPageId(-1, 0);
+        Database.getCatalog().addTable(new SkeletonFile(-1, TD), SystemTestUtil.getUUID());
+    }
+
+    private static Tuple tuple(int id, String name) {
+        Tuple t = new Tuple(TD);
+        t.setField(0, new IntField(id));
+        t.setField(1, new StringField(name, Type.STRING_LEN));
+        return t;
+    }
+
+    /**
+     * Short strings take only as much room as their value.
+     */
+    @Test public void shortStringsFitMoreTuples() throws Exception {
+        SlottedHeapPage page = new SlottedHeapPage(pid, HeapPage.createEmptyPageData());
+        assertTrue(page.isEmpty());
+
+        int n = 0;
+        while (page.hasRoomFor(tuple(n, "abc"))) {
+            page.insertTuple(tuple(n, "abc"));
+            n++;
+        }
+        int fixedSlots = (BufferPool.getPageSize() * 8) / (TD.getSize() * 8 + 1);
+        assertTrue(n > 5 * fixedSlots);
+        assertEquals(n, page.getNumTuples());
+
+        try {
+            page.insertTuple(tuple(n, "abc"));
+            fail("page should be full");
+        } catch (DbException e) {
+            // expected
+        }
+
+        SlottedHeapPage copy = new SlottedHeapPage(pid, page.getPageData());
+        Iterator<Tuple> it = copy.iterator();
+        for (int i = 0; i < n; i++) {
+            Tuple t = it.next();
+            assertEquals(new IntField(i), t.getField(0));
+            assertEquals("abc", ((StringField) t.getField(1)).getValue());
+            assertEquals(new RecordId(pid, i), t.getRecordId());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    /**
+     * Space freed by deletes is reused once the records are compacted, and
+     * the remaining tuples keep their RecordIds.
+     */
+    @Test public void deleteAndCompact() throws Exception {
+        SlottedHeapPage page = new SlottedHeapPage(pid, HeapPage.createEmptyPageData());
+        int n = 0;
+        while (page.hasRoomFor(tuple(n, "0123456789"))) {
+            page.insertTuple(tuple(n++, "0123456789"));
+        }
+        for (int i = 0; i < n; i += 2) {
+            page.deleteTuple(page.getTuple(i));
+        }
+        assertFalse(page.isSlotUsed(0));
+
+        // a record longer than any hole left by the deletes
+        Tuple big = tuple(-1, "abcdefghijklmnopqrstuvwxyz");
+        assertTrue(page.hasRoomFor(big));
+        page.insertTuple(big);
+        assertEquals(new RecordId(pid, 0), big.getRecordId());
+
+        SlottedHeapPage copy = new SlottedHeapPage(pid, page.getPageData());
+        assertEquals("abcdefghijklmnopqrstuvwxyz", ((StringField) copy.getTuple(0).getField(1)).getValue());
+        for (int i = 1; i < n; i += 2) {
+            assertEquals(new IntField(i), copy.getTuple(i).getField(0));
+        }
+    }
+
+    /**
+     * A HeapFile stores and scans slotted pages.
+     */
+    @Test public void heapFile() throws Exception {
+        File f = File.createTempFile("slotted", ".dat");
+        SystemTestUtil.deleteOnExit(f);
+        HeapFile hf = new HeapFile(f, TD, PageFormat.SLOTTED);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        TransactionId tid = new TransactionId();
+
+        for (int i = 0; i < 1000; i++) {
+            Database.getBufferPool().insertTuple(tid, hf.getId(), tuple(i, "row" + i));
+        }
+        assertTrue(hf.numPages() < 1000 / 30);
+
+        DbFileIterator it = hf.iterator(tid);
+        it.open();
+        int count = 0;
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            assertEquals("row" + ((IntField) t.getField(0)).getValue(),
+                    ((StringField) t.getField(1)).getValue());
+            count++;
+        }
+        it.close();
+        assertEquals(1000, count);
+
+        TupleCursor cursor = hf.cursor(tid);
+        count = 0;
+        while (cursor.advance()) {
+            assertEquals("row" + cursor.getInt(0), cursor.getString(1));
+            count++;
+        }
+        assertEquals(1000, count);
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SlottedHeapPageTest.class);
+    }
+}
@@ -3,6 +3,8 @@ package simpledb;
 import java.io.*;
 import java.util.*;
 
+import simpledb.systemtest.SystemTestUtil;
+
 import static org.junit.Assert.*;
 
 public class TestUtil {
@@ -379,7 +381,7 @@ public class TestUtil {
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-            emptyFile.deleteOnExit();
+            SystemTestUtil.deleteOnExit(emptyFile);
         }
 
         protected void setUp() throws Exception {
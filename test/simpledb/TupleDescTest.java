@@ -1,6 +1,6 @@
 package simpledb;
 
-import java.util.NoSuchElementException;
+import java.util.*;
 
 import org.junit.Test;
 
@@ -133,6 +133,30 @@ public class TupleDescTest extends SimpleDbTestBase {
         }
     }
 
+    /**
+     * Unit test for string fields with a declared length
+     */
+    @Test public void stringLengths() {
+        Type[] types = new Type[] { Type.STRING_TYPE, Type.INT_TYPE, Type.STRING_TYPE };
+        TupleDesc td = new TupleDesc(types, new String[] { "code", "n", "name" }, new int[] { 2, 0, 0 });
+        assertEquals(2, td.getStringLength(0));
+        assertEquals(Type.STRING_LEN, td.getStringLength(2));
+        assertEquals(6, td.getFieldLength(0));
+        assertEquals(6 + 4 + Type.STRING_TYPE.getLen(), td.getSize());
+        assertEquals(10, td.getFieldOffset(2));
+
+        assertFalse(td.equals(new TupleDesc(types)));
+        assertEquals(td, new TupleDesc(types, new String[3], new int[] { 2, Type.STRING_LEN, Type.STRING_LEN }));
+        assertEquals(2, TupleDesc.merge(new TupleDesc(new Type[] { Type.INT_TYPE }), td).getStringLength(1));
+
+        Tuple t = new Tuple(td);
+        t.setString(0, "USA");
+        t.setField(2, new StringField("Boston", Type.STRING_LEN));
+        assertEquals("US", t.getString(0));
+        assertEquals(new StringField("US", 2), t.getField(0));
+        assertEquals("Boston", t.getString(2));
+    }
+
     /**
      * Unit test for TupleDesc.numFields()
      */
@@ -167,6 +191,24 @@ public class TupleDescTest extends SimpleDbTestBase {
         assertFalse(intString.equals(singleInt2));
     }
 
+    /**
+     * Unit test for TupleDesc.hashCode() and TupleDesc.intern()
+     */
+    @Test public void hashAndIntern() {
+        Type[] types = new Type[] { Type.INT_TYPE, Type.STRING_TYPE };
+        TupleDesc a = new TupleDesc(types, new String[] { "x", "y" });
+        TupleDesc b = new TupleDesc(types, new String[] { "p", "q" });
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(1, new HashSet<TupleDesc>(Arrays.asList(a, b)).size());
+
+        // interning keeps the names apart
+        TupleDesc ia = TupleDesc.intern(a);
+        assertSame(ia, TupleDesc.intern(new TupleDesc(types, new String[] { "x", "y" })));
+        assertNotSame(ia, TupleDesc.intern(b));
+        assertEquals(1, TupleDesc.intern(b).fieldNameToIndex("q"));
+    }
+
     /**
      * JUnit suite target
      */
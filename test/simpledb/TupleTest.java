@@ -1,6 +1,8 @@
 package simpledb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 import junit.framework.JUnit4TestAdapter;
 
 import org.junit.Test;
@@ -29,6 +31,44 @@ public class TupleTest extends SimpleDbTestBase {
         assertEquals(new IntField(37), tup.getField(1));
     }
 
+    /**
+     * Unit test for the typed accessors of Tuple
+     */
+    @Test public void typedAccessors() {
+        TupleDesc td = new TupleDesc(new Type[] { Type.INT_TYPE, Type.STRING_TYPE, Type.INT_TYPE });
+        Tuple tup = new Tuple(td);
+        assertNull(tup.getField(1));
+
+        tup.setInt(0, -7);
+        tup.setString(1, "hello");
+        tup.setField(2, new IntField(Integer.MAX_VALUE));
+
+        assertEquals(-7, tup.getInt(0));
+        assertEquals("hello", tup.getString(1));
+        assertEquals(new StringField("hello", Type.STRING_LEN), tup.getField(1));
+        assertEquals(Integer.MAX_VALUE, tup.getInt(2));
+
+        tup.setField(1, new StringField("bye", Type.STRING_LEN));
+        assertEquals("bye", tup.getString(1));
+        tup.setField(0, null);
+        assertNull(tup.getField(0));
+
+        try {
+            tup.setField(0, new StringField("x", Type.STRING_LEN));
+            fail("field 0 is an INT_TYPE field");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        Tuple wide = new Tuple(new TupleDesc(new Type[] { Type.LONG_TYPE, Type.DOUBLE_TYPE, Type.DATE_TYPE }));
+        wide.setField(0, new LongField(Long.MIN_VALUE + 3));
+        wide.setField(1, new DoubleField(-2.5));
+        wide.setField(2, DateField.valueOf("2000-01-02"));
+        assertEquals(Long.MIN_VALUE + 3, wide.getLong(0));
+        assertEquals(-2.5, wide.getDouble(1), 0.0);
+        assertEquals(DateField.valueOf("2000-01-02").getValue(), wide.getLong(2));
+    }
+
     /**
      * Unit test for Tuple.getTupleDesc()
      */
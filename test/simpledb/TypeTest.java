@@ -0,0 +1,212 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class TypeTest extends SimpleDbTestBase {
+
+    /**
+     * Unit test for the fixed-width types and their Fields
+     */
+    @Test public void fixedWidthTypes() throws Exception {
+        assertEquals(8, Type.LONG_TYPE.getLen());
+        assertEquals(8, Type.DOUBLE_TYPE.getLen());
+        assertEquals(8, Type.DATE_TYPE.getLen());
+        assertEquals(8, Type.TIMESTAMP_TYPE.getLen());
+
+        Field[] fields = new Field[] {
+            new LongField(1L << 40),
+            new DoubleField(-2.5),
+            new DateField(LocalDate.of(2020, 2, 29)),
+            TimestampField.valueOf("2020-02-29 12:30:00")
+        };
+        for (Field f : fields) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            f.serialize(new DataOutputStream(baos));
+            assertEquals(8, baos.size());
+            Field read = f.getType().parse(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+            assertEquals(f, read);
+            assertEquals(f, f.getType().parse(f.toString()));
+        }
+
+        assertEquals("2020-02-29", fields[2].toString());
+        assertEquals("2020-02-29T12:30:00Z", fields[3].toString());
+        assertTrue(new LongField(3).compare(Predicate.Op.GREATER_THAN, new LongField(2)));
+        assertTrue(new DoubleField(1.5).compare(Predicate.Op.LESS_THAN_OR_EQ, new DoubleField(1.5)));
+        assertTrue(DateField.valueOf("2019-12-31").compare(Predicate.Op.LESS_THAN, fields[2]));
+        assertTrue(fields[3].compare(Predicate.Op.NOT_EQUALS, new TimestampField(0)));
+    }
+
+    /**
+     * Fields written to a ByteBuffer at an offset match their stream format
+     * and read back with Type.parse.
+     */
+    @Test public void bufferCodec() throws Exception {
+        Field[] fields = new Field[] {
+            new IntField(-7),
+            new StringField("caf\u00e9", 6),
+            new LongField(Long.MIN_VALUE),
+            new DoubleField(Math.PI),
+            DateField.valueOf("1969-07-20"),
+            new TimestampField(1234567890123L)
+        };
+        for (Field f : fields) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            f.serialize(new DataOutputStream(baos));
+            ByteBuffer buf = ByteBuffer.allocate(baos.size() + 3);
+            f.serialize(buf, 3);
+            assertEquals(0, buf.position());
+            assertArrayEquals(baos.toByteArray(), Arrays.copyOfRange(buf.array(), 3, buf.capacity()));
+            Field read = f instanceof StringField ? StringField.parse(buf, 3, 6) : f.getType().parse(buf, 3);
+            assertEquals(f, read);
+        }
+    }
+
+    /**
+     * StringField compares, hashes and searches its bytes as String does on
+     * its characters.
+     */
+    @Test public void stringFieldBytes() throws Exception {
+        String[] values = { "", "a", "ab", "b", "caf\u00e9", "cafe", "zz" };
+        for (String x : values) {
+            StringField fx = new StringField(x, 8);
+            assertEquals(x.hashCode(), fx.hashCode());
+            assertEquals(x, fx.getValue());
+            for (String y : values) {
+                StringField fy = new StringField(y, 8);
+                int cmp = Integer.signum(x.compareTo(y));
+                assertEquals(cmp < 0, fx.compare(Predicate.Op.LESS_THAN, fy));
+                assertEquals(cmp == 0, fx.equals(fy));
+                assertEquals(x.contains(y), fx.compare(Predicate.Op.LIKE, fy));
+            }
+        }
+
+        StringField f = new StringField("truncated", 5);
+        assertEquals("trunc", f.getValue());
+        assertEquals(5, f.length());
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        f.serialize(new DataOutputStream(baos));
+        assertEquals(9, baos.size());
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals(f, StringField.parse(dis, 5));
+
+        try {
+            new StringField("\u20ac5", 5);
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    /**
+     * New types can be declared in a catalog and loaded from a text file.
+     */
+    @Test public void loadAndScan() throws Exception {
+        File dir = File.createTempFile("types", "");
+        dir.delete();
+        dir.mkdir();
+        dir.deleteOnExit();
+        File schema = new File(dir, "catalog.txt");
+        File txt = new File(dir, "events.txt");
+        File dat = new File(dir, "events.dat");
+        schema.deleteOnExit();
+        txt.deleteOnExit();
+        SystemTestUtil.deleteOnExit(dat);
+
+        PrintWriter out = new PrintWriter(new FileWriter(schema));
+        out.println("events (id int pk, n long, amount double, day date, at timestamp)");
+        out.close();
+        out = new PrintWriter(new FileWriter(txt));
+        out.println("1,10000000000,9.75,2021-03-04,2021-03-04T05:06:07Z");
+        out.println("2,-1,0.5,1999-12-31,0");
+        out.close();
+
+        Type[] types = new Type[] { Type.INT_TYPE, Type.LONG_TYPE, Type.DOUBLE_TYPE,
+                Type.DATE_TYPE, Type.TIMESTAMP_TYPE };
+        HeapFileEncoder.convert(txt, dat, BufferPool.getPageSize(), types.length, types, ',');
+        Database.getCatalog().loadSchema(schema.getAbsolutePath());
+        int tableId = Database.getCatalog().getTableId("events");
+        assertEquals(new TupleDesc(types), Database.getCatalog().getTupleDesc(tableId));
+
+        TransactionId tid = new TransactionId();
+        SeqScan scan = new SeqScan(tid, tableId, "e",
+                new Predicate(3, Predicate.Op.GREATER_THAN, DateField.valueOf("2000-01-01")));
+        scan.open();
+        assertTrue(scan.hasNext());
+        Tuple t = scan.next();
+        assertEquals(new LongField(10000000000L), t.getField(1));
+        assertEquals(new DoubleField(9.75), t.getField(2));
+        assertEquals(DateField.valueOf("2021-03-04"), t.getField(3));
+        assertEquals(TimestampField.valueOf("2021-03-04T05:06:07Z"), t.getField(4));
+        assertFalse(scan.hasNext());
+        scan.close();
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * A string(n) column takes n + 4 bytes on disk, so more rows fit on a
+     * page, and longer values are truncated to n characters.
+     */
+    @Test public void declaredStringLength() throws Exception {
+        assertEquals(Type.STRING_TYPE, Type.forName("string(2)"));
+        assertEquals(2, Type.stringLength("string(2)"));
+        assertEquals(Type.STRING_LEN, Type.stringLength("string"));
+
+        File dir = File.createTempFile("codes", "");
+        dir.delete();
+        dir.mkdir();
+        dir.deleteOnExit();
+        File schema = new File(dir, "catalog.txt");
+        File txt = new File(dir, "codes.txt");
+        File dat = new File(dir, "codes.dat");
+        schema.deleteOnExit();
+        txt.deleteOnExit();
+        SystemTestUtil.deleteOnExit(dat);
+
+        PrintWriter out = new PrintWriter(new FileWriter(schema));
+        out.println("codes (id int pk, code string(2))");
+        out.close();
+        out = new PrintWriter(new FileWriter(txt));
+        for (int i = 0; i < 400; i++) {
+            out.println(i + "," + (i % 2 == 0 ? "US" : "GBR"));
+        }
+        out.close();
+
+        Type[] types = new Type[] { Type.INT_TYPE, Type.STRING_TYPE };
+        HeapFileEncoder.convert(txt, dat, BufferPool.getPageSize(), types.length, types,
+                new int[] { 0, 2 }, ',');
+        assertEquals(BufferPool.getPageSize(), dat.length());
+        Database.getCatalog().loadSchema(schema.getAbsolutePath());
+        int tableId = Database.getCatalog().getTableId("codes");
+        assertEquals(10, Database.getCatalog().getTupleDesc(tableId).getSize());
+
+        TransactionId tid = new TransactionId();
+        SeqScan scan = new SeqScan(tid, tableId, "c");
+        assertEquals(2, scan.getTupleDesc().getStringLength(1));
+        scan.open();
+        int count = 0;
+        while (scan.hasNext()) {
+            Tuple t = scan.next();
+            assertEquals(count % 2 == 0 ? "US" : "GB", t.getField(1).toString());
+            count++;
+        }
+        assertEquals(400, count);
+        scan.close();
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(TypeTest.class);
+    }
+}
@@ -0,0 +1,116 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.File;
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class ZoneMapTest extends SimpleDbTestBase {
+
+    private static int count(DbIterator it) throws Exception {
+        it.open();
+        int n = 0;
+        while (it.hasNext()) {
+            it.next();
+            n++;
+        }
+        it.close();
+        return n;
+    }
+
+    /**
+     * Page summaries are kept up to date on insert and used to skip pages.
+     */
+    @Test public void skipPages() throws Exception {
+        File f = File.createTempFile("zonemap", ".dat");
+        SystemTestUtil.deleteOnExit(f);
+        HeapFile hf = new HeapFile(f, Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        TransactionId tid = new TransactionId();
+        for (int i = 0; i < 1100; i++) {
+            Database.getBufferPool().insertTuple(tid, hf.getId(), Utility.getHeapTuple(new int[] { i, 0 }));
+        }
+        assertEquals(3, hf.numPages());
+
+        ZoneMap zones = hf.getZoneMap();
+        Predicate tail = new Predicate(0, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(1008));
+        assertFalse(zones.mightMatch(0, tail));
+        assertFalse(zones.mightMatch(1, tail));
+        assertTrue(zones.mightMatch(2, tail));
+        assertEquals(504, zones.getCount(0));
+        assertEquals(1100 - 1008, count(new SeqScan(tid, hf.getId(), "t", tail)));
+
+        Predicate head = new Predicate(0, Predicate.Op.EQUALS, new IntField(7));
+        assertTrue(zones.mightMatch(0, head));
+        assertFalse(zones.mightMatch(2, head));
+        assertEquals(1, count(new SeqScan(tid, hf.getId(), "t", head)));
+
+        // an insert widens the summary of the page it lands on
+        Database.getBufferPool().insertTuple(tid, hf.getId(), Utility.getHeapTuple(new int[] { 7, 0 }));
+        assertTrue(zones.mightMatch(2, head));
+        assertEquals(2, count(new SeqScan(tid, hf.getId(), "t", head)));
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * A newly opened file has no summaries until its pages are read.
+     */
+    @Test public void reopen() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile hf = SystemTestUtil.createRandomHeapFile(2, 1000, null, tuples);
+        Predicate p = new Predicate(1, Predicate.Op.LESS_THAN, new IntField(0));
+        assertEquals(-1, hf.getZoneMap().getCount(0));
+        assertTrue(hf.getZoneMap().mightMatch(0, p));
+
+        TransactionId tid = new TransactionId();
+        assertEquals(0, count(new SeqScan(tid, hf.getId(), "t", p)));
+        assertEquals(504, hf.getZoneMap().getCount(0));
+        assertFalse(hf.getZoneMap().mightMatch(0, p));
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * Summaries of written pages are saved next to the file and loaded when
+     * it is opened again, unless the file changed after them; summaries of
+     * pages that were only read are not saved.
+     */
+    @Test public void sidecar() throws Exception {
+        File f = File.createTempFile("zonemap", ".dat");
+        SystemTestUtil.deleteOnExit(f);
+        HeapFile hf = new HeapFile(f, Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        TransactionId tid = new TransactionId();
+        for (int i = 0; i < 600; i++) {
+            Database.getBufferPool().insertTuple(tid, hf.getId(), Utility.getHeapTuple(new int[] { i, 0 }));
+        }
+        Database.getBufferPool().flushPages(tid);
+
+        ZoneMap zones = new HeapFile(f, Utility.getTupleDesc(2)).getZoneMap();
+        assertEquals(504, zones.getCount(0));
+        assertEquals(96, zones.getCount(1));
+        assertFalse(zones.mightMatch(0, new Predicate(0, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(504))));
+        assertTrue(zones.mightMatch(1, new Predicate(0, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(504))));
+
+        assertTrue(f.setLastModified(hf.zoneFile().lastModified() + 1000));
+        HeapFile stale = new HeapFile(f, Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(stale, SystemTestUtil.getUUID());
+        assertEquals(-1, stale.getZoneMap().getCount(0));
+
+        // reads summarize pages in memory but do not make the sidecar usable
+        stale.readPage(new HeapPageId(stale.getId(), 0));
+        assertEquals(504, stale.getZoneMap().getCount(0));
+        assertEquals(-1, new HeapFile(f, Utility.getTupleDesc(2)).getZoneMap().getCount(0));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ZoneMapTest.class);
+    }
+}
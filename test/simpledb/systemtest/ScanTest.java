@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
@@ -104,6 +105,46 @@ public class ScanTest extends SimpleDbTestBase {
         assertEquals(0, table.readCount);
     }
 
+    /** Scans a table on several threads, in order and out of order, through
+     * a BufferPool that is smaller than the table. */
+    @Test public void testParallel() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile f = SystemTestUtil.createRandomHeapFile(2, 504 * 20 + 7, null, tuples);
+        Database.resetBufferPool(8);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        TransactionId tid = new TransactionId();
+        try {
+            ParallelSeqScan scan = new ParallelSeqScan(tid, f.getId(), "t", null, null, true, 2, pool);
+            scan.open();
+            for (ArrayList<Integer> expected : tuples) {
+                assertTrue(scan.hasNext());
+                assertEquals(expected, SystemTestUtil.tupleToList(scan.next()));
+            }
+            assertFalse(scan.hasNext());
+            scan.rewind();
+            assertEquals(tuples.get(0), SystemTestUtil.tupleToList(scan.next()));
+            scan.close();
+
+            SystemTestUtil.matchTuples(
+                    new ParallelSeqScan(tid, f.getId(), "t", null, null, false, 3, pool), tuples);
+
+            Predicate p = new Predicate(0, Predicate.Op.LESS_THAN, new IntField(1 << 14));
+            ArrayList<ArrayList<Integer>> matching = new ArrayList<ArrayList<Integer>>();
+            for (ArrayList<Integer> t : tuples) {
+                if (t.get(0) < 1 << 14) {
+                    matching.add(new ArrayList<Integer>(t.subList(1, 2)));
+                }
+            }
+            ParallelSeqScan filtered = new ParallelSeqScan(tid, f.getId(), "t", p, new int[] { 1 }, false, 1, pool);
+            assertEquals(1, filtered.getTupleDesc().numFields());
+            SystemTestUtil.matchTuples(filtered, matching);
+        } finally {
+            pool.shutdown();
+            Database.getBufferPool().transactionComplete(tid);
+            Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        }
+    }
+
     /** Make test compatible with older version of ant. */
     public static junit.framework.Test suite() {
         return new junit.framework.JUnit4TestAdapter(ScanTest.class);
@@ -80,11 +80,28 @@ public class SystemTestUtil {
 
         // Convert the tuples list to a heap file and open it
         File temp = File.createTempFile("table", ".dat");
-        temp.deleteOnExit();
+        deleteOnExit(temp);
         HeapFileEncoder.convert(tuples, temp, BufferPool.getPageSize(), columns);
         return temp;
     }
 
+    /**
+     * Deletes the given file, the sidecar files a HeapFile keeps next to it
+     * and, for a directory, the files it holds now when the JVM exits.
+     */
+    public static void deleteOnExit(File f) {
+        f.deleteOnExit();
+        for (File sidecar : HeapFile.sidecarFiles(f)) {
+            sidecar.deleteOnExit();
+        }
+        File[] contents = f.listFiles();
+        if (contents != null) {
+            for (File child : contents) {
+                deleteOnExit(child);
+            }
+        }
+    }
+
     public static ArrayList<Integer> tupleToList(Tuple tuple) {
         ArrayList<Integer> list = new ArrayList<Integer>();
         for (int i = 0; i < tuple.getTupleDesc().numFields(); ++i) {